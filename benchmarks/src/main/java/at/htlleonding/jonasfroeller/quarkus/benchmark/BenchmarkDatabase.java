@@ -0,0 +1,74 @@
+package at.htlleonding.jonasfroeller.quarkus.benchmark;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * In-memory H2 database with the ToDo schema, bootstrapped with plain Hibernate
+ * so the benchmarks measure the persistence layer without the Quarkus runtime.
+ */
+final class BenchmarkDatabase {
+    static final int SEED_CHUNK_SIZE = 10_000;
+    static final LocalDate FIRST_DEADLINE = LocalDate.of(2023, 1, 1);
+
+    private BenchmarkDatabase() {
+    }
+
+    static EntityManagerFactory open(String name) {
+        return new Configuration()
+                .addAnnotatedClass(ToDo.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+                .setProperty(AvailableSettings.JAKARTA_HBM2DDL_DATABASE_ACTION, "drop-and-create")
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50")
+                .setProperty(AvailableSettings.POOL_SIZE, "16")
+                .buildSessionFactory();
+    }
+
+    static ToDo toDo(int i) {
+        ToDo toDo = new ToDo();
+        toDo.setDescription("Benchmark todo number " + i + ".");
+        toDo.setDeadline(FIRST_DEADLINE.plusDays(i % 3650));
+        toDo.setPriority(ToDo.TODO_PRIORITY_MIN + i % ToDo.TODO_PRIORITY_MAX);
+
+        return toDo;
+    }
+
+    /**
+     * Inserts {@code rows} ToDos, one transaction per {@value #SEED_CHUNK_SIZE} rows.
+     */
+    static void seed(EntityManagerFactory entityManagerFactory, int rows) {
+        for (int start = 0; start < rows; start += SEED_CHUNK_SIZE) {
+            int first = start;
+            int last = Math.min(start + SEED_CHUNK_SIZE, rows);
+
+            inTransaction(entityManagerFactory, entityManager -> {
+                for (int i = first; i < last; i++) {
+                    entityManager.persist(toDo(i));
+
+                    if ((i + 1) % 50 == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                }
+            });
+        }
+    }
+
+    static void inTransaction(EntityManagerFactory entityManagerFactory, Consumer<EntityManager> work) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+
+        try {
+            entityManager.getTransaction().begin();
+            work.accept(entityManager);
+            entityManager.getTransaction().commit();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
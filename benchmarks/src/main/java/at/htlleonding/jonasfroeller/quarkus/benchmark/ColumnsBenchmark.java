@@ -0,0 +1,90 @@
+package at.htlleonding.jonasfroeller.quarkus.benchmark;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoColumns;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoPriorityIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans of all ToDos by priority and by a week of deadlines, with {@link ToDoColumns} and with a
+ * list of ToDo objects on the heap. Add {@code -prof gc} for allocations; the heap size of the
+ * fork shows the difference in retained memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx8g", "-XX:MaxDirectMemorySize=4g"})
+public class ColumnsBenchmark {
+    private static final int PAGE = 50;
+
+    @Param({"1000000", "10000000"})
+    int rows;
+
+    private ToDoColumns columns;
+    private List<ToDo> heap;
+    private LocalDate from;
+    private LocalDate to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.columns = new ToDoColumns();
+        this.heap = new ArrayList<>(this.rows);
+
+        for (int i = 0; i < this.rows; i++) {
+            ToDo toDo = BenchmarkDatabase.toDo(i);
+            toDo.assignId(i + 1);
+            this.columns.put(toDo);
+            this.heap.add(toDo);
+        }
+
+        this.from = BenchmarkDatabase.FIRST_DEADLINE.plusDays(1000);
+        this.to = this.from.plusWeeks(1);
+    }
+
+    @Benchmark
+    public List<ToDo> havingPriorityColumns() {
+        return this.columns.getAllToDosHavingPriority(2);
+    }
+
+    @Benchmark
+    public List<ToDo> havingPriorityHeap() {
+        List<ToDo> toDos = new ArrayList<>();
+
+        for (ToDo toDo : this.heap) {
+            if (toDo.getPriority() == 2) {
+                toDos.add(toDo);
+            }
+        }
+
+        toDos.sort(ToDoPriorityIndex.DEADLINE_ORDER);
+        return toDos;
+    }
+
+    @Benchmark
+    public List<ToDo> dueWithinWeekColumns() {
+        return this.columns.getToDosDue(this.from, this.to, PAGE);
+    }
+
+    @Benchmark
+    public List<ToDo> dueWithinWeekHeap() {
+        List<ToDo> toDos = new ArrayList<>();
+
+        for (ToDo toDo : this.heap) {
+            LocalDate deadline = toDo.getDeadline();
+
+            if (deadline != null && !deadline.isBefore(this.from) && deadline.isBefore(this.to)) {
+                toDos.add(toDo);
+            }
+        }
+
+        toDos.sort(ToDoPriorityIndex.DEADLINE_ORDER);
+        return toDos.size() > PAGE ? toDos.subList(0, PAGE) : toDos;
+    }
+}
@@ -0,0 +1,83 @@
+package at.htlleonding.jonasfroeller.quarkus.benchmark;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding of a ToDo list in the formats {@code /api/todos/list} offers, with and without gzip.
+ * The scores are the encode times; the bytes on the wire are reported next to them as the
+ * {@code bytes} secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatBenchmark {
+    @Param({"json", "cbor", "smile"})
+    String format;
+    @Param({"50", "1000", "10000"})
+    int size;
+
+    private ObjectWriter writer;
+    private List<ToDo> toDos;
+
+    /**
+     * Size of the last encoding, reported by JMH as a secondary result of each benchmark.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Size {
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper json = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ObjectMapper mapper = switch (this.format) {
+            case "cbor" -> json.copyWith(new CBORFactory());
+            case "smile" -> json.copyWith(new SmileFactory());
+            default -> json;
+        };
+
+        this.writer = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, ToDo.class));
+        this.toDos = IntStream.range(0, this.size).mapToObj(BenchmarkDatabase::toDo).toList();
+    }
+
+    @Benchmark
+    public byte[] encode(Size size) throws IOException {
+        byte[] encoded = this.writer.writeValueAsBytes(this.toDos);
+        size.bytes = encoded.length;
+
+        return encoded;
+    }
+
+    @Benchmark
+    public byte[] encodeGzipped(Size size) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            this.writer.writeValue(gzip, this.toDos);
+        }
+
+        size.bytes = bytes.size();
+
+        return bytes.toByteArray();
+    }
+}
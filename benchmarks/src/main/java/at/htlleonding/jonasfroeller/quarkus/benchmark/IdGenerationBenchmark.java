@@ -0,0 +1,51 @@
+package at.htlleonding.jonasfroeller.quarkus.benchmark;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoIdGenerator;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Insert throughput of {@code addToDo} (one ToDo per transaction) with concurrent writers
+ * for every {@code todo.id.strategy}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class IdGenerationBenchmark {
+    @Param({ToDoIdGenerator.STRATEGY_POOLED, ToDoIdGenerator.STRATEGY_POOLED_LO, ToDoIdGenerator.STRATEGY_TIME_ORDERED})
+    String strategy;
+    @Param({"1", "50"})
+    int allocationSize;
+
+    private EntityManagerFactory entityManagerFactory;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // read by ToDoIdGenerator through MicroProfile Config when the factory boots
+        System.setProperty("todo.id.strategy", this.strategy);
+        System.setProperty("todo.id.allocation-size", Integer.toString(this.allocationSize));
+        this.entityManagerFactory = BenchmarkDatabase.open("ids");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public Long addToDo() {
+        ToDo toDo = BenchmarkDatabase.toDo(this.counter.incrementAndGet());
+        BenchmarkDatabase.inTransaction(this.entityManagerFactory, entityManager -> entityManager.persist(toDo));
+
+        return toDo.getId();
+    }
+}
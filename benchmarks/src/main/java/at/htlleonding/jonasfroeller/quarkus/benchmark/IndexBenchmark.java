@@ -0,0 +1,87 @@
+package at.htlleonding.jonasfroeller.quarkus.benchmark;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TypedQuery;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First page (50 rows) of {@code ToDo.getAll} and {@code ToDo.getAll.havingPriority} at 1M rows,
+ * with the ToDo indexes and without them. With the indexes H2 reads the rows in index order and
+ * stops after the page; without them it scans and sorts the table. The trial fails if the
+ * plans do not match the expectation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+    private static final int PAGE = 50;
+    private static final String PLAN_ALL = "EXPLAIN SELECT * FROM ToDo ORDER BY deadline NULLS FIRST, id LIMIT " + PAGE;
+    private static final String PLAN_HAVING_PRIORITY = "EXPLAIN SELECT * FROM ToDo WHERE priority = 2 ORDER BY deadline NULLS FIRST, id LIMIT " + PAGE;
+
+    @Param({"1000000"})
+    int rows;
+    @Param({"true", "false"})
+    boolean indexed;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkDatabase.open("indexes");
+        BenchmarkDatabase.seed(this.entityManagerFactory, this.rows);
+
+        BenchmarkDatabase.inTransaction(this.entityManagerFactory, entityManager -> {
+            if (!this.indexed) {
+                entityManager.createNativeQuery("DROP INDEX todo_deadline_id_idx").executeUpdate();
+                entityManager.createNativeQuery("DROP INDEX todo_priority_deadline_id_idx").executeUpdate();
+            }
+
+            entityManager.createNativeQuery("ANALYZE").executeUpdate();
+            requirePlan(entityManager, PLAN_ALL);
+            requirePlan(entityManager, PLAN_HAVING_PRIORITY);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<ToDo> getAllFirstPage() {
+        try (EntityManager entityManager = this.entityManagerFactory.createEntityManager()) {
+            return entityManager.createNamedQuery(ToDo.QUERY_GET_ALL, ToDo.class)
+                    .setMaxResults(PAGE)
+                    .getResultList();
+        }
+    }
+
+    @Benchmark
+    public List<ToDo> getAllHavingPriorityFirstPage() {
+        try (EntityManager entityManager = this.entityManagerFactory.createEntityManager()) {
+            TypedQuery<ToDo> query = entityManager.createNamedQuery(ToDo.QUERY_GET_ALL_HAVING_PRIORITY, ToDo.class);
+            query.setParameter("priority", 2);
+
+            return query.setMaxResults(PAGE).getResultList();
+        }
+    }
+
+    /**
+     * H2 marks a plan that reads an index in the requested order with {@code index sorted}.
+     */
+    private void requirePlan(EntityManager entityManager, String explain) {
+        String plan = (String) entityManager.createNativeQuery(explain).getSingleResult();
+
+        if (plan.contains("index sorted") != this.indexed) {
+            throw new IllegalStateException("Unexpected plan " + (this.indexed ? "with" : "without") + " indexes: " + plan);
+        }
+    }
+}
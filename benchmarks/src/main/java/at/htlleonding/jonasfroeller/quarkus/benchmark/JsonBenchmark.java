@@ -0,0 +1,104 @@
+package at.htlleonding.jonasfroeller.quarkus.benchmark;
+
+import at.htlleonding.jonasfroeller.quarkus.boundary.ToDoListJsonWriter;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Jackson (de)serialization of ToDos, configured like the Quarkus {@code ObjectMapper}:
+ * {@code LocalDate} deadlines as ISO strings, unknown properties ignored. Lists are also written
+ * by {@link ToDoListJsonWriter}, which serves them in the application; run with {@code -prof gc}
+ * to compare the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+    @Param({"1", "50", "1000"})
+    int size;
+
+    private ObjectWriter toDoWriter;
+    private ObjectWriter listWriter;
+    private ObjectReader toDoReader;
+    private ObjectReader listReader;
+    private ToDo toDo;
+    private List<ToDo> toDos;
+    private String toDoJson;
+    private String listJson;
+    private ToDoListJsonWriter handWrittenWriter;
+    private ByteArrayOutputStream output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        this.toDoWriter = objectMapper.writerFor(ToDo.class);
+        this.listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, ToDo.class));
+        this.toDoReader = objectMapper.readerFor(ToDo.class);
+        this.listReader = objectMapper.readerForListOf(ToDo.class);
+
+        this.toDo = BenchmarkDatabase.toDo(0);
+        this.toDos = IntStream.range(0, this.size).mapToObj(BenchmarkDatabase::toDo).toList();
+        this.toDoJson = this.toDoWriter.writeValueAsString(this.toDo);
+        this.listJson = this.listWriter.writeValueAsString(this.toDos);
+        this.handWrittenWriter = new ToDoListJsonWriter();
+        this.output = new ByteArrayOutputStream(this.listJson.length());
+    }
+
+    @Benchmark
+    public byte[] serializeToDo() throws JsonProcessingException {
+        return this.toDoWriter.writeValueAsBytes(this.toDo);
+    }
+
+    @Benchmark
+    public ToDo deserializeToDo() throws JsonProcessingException {
+        return this.toDoReader.readValue(this.toDoJson);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws JsonProcessingException {
+        return this.listWriter.writeValueAsBytes(this.toDos);
+    }
+
+    /**
+     * Both list writers write into a reused stream, like into a response, so only the
+     * serialization itself allocates.
+     */
+    @Benchmark
+    public int serializeListToStream() throws IOException {
+        this.output.reset();
+        this.listWriter.writeValue(this.output, this.toDos);
+        return this.output.size();
+    }
+
+    @Benchmark
+    public int serializeListHandWritten() throws IOException {
+        this.output.reset();
+        this.handWrittenWriter.write(this.toDos, this.output);
+        return this.output.size();
+    }
+
+    @Benchmark
+    public List<ToDo> deserializeList() throws JsonProcessingException {
+        return this.listReader.readValue(this.listJson);
+    }
+}
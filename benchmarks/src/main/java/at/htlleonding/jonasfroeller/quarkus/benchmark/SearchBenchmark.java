@@ -0,0 +1,110 @@
+package at.htlleonding.jonasfroeller.quarkus.benchmark;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoSearch;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of {@link ToDoSearchIndex} searches at 1M ToDos whose descriptions use
+ * a vocabulary of 20k words with a skewed frequency. Sample mode reports p99 and p99.9.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchBenchmark {
+    private static final int VOCABULARY = 20_000;
+    private static final int WORDS_PER_TODO = 6;
+
+    @Param({"1000000"})
+    int rows;
+
+    private ToDoSearchIndex index;
+    private String[] vocabulary;
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.vocabulary = new String[VOCABULARY];
+
+        for (int i = 0; i < VOCABULARY; i++) {
+            this.vocabulary[i] = word(i);
+        }
+
+        this.index = new ToDoSearchIndex();
+
+        for (int i = 0; i < this.rows; i++) {
+            ToDo toDo = BenchmarkDatabase.toDo(i);
+            toDo.assignId(i + 1);
+            StringBuilder description = new StringBuilder();
+
+            for (int w = 0; w < WORDS_PER_TODO; w++) {
+                description.append(skewedWord()).append(' ');
+            }
+
+            toDo.setDescription(description.toString().trim());
+            this.index.index(toDo);
+        }
+    }
+
+    @Benchmark
+    public List<ToDo> commonWord() {
+        return this.index.search(search(this.vocabulary[this.random.nextInt(10)], false, null));
+    }
+
+    @Benchmark
+    public List<ToDo> twoWords() {
+        return this.index.search(search(skewedWord() + " " + skewedWord(), false, null));
+    }
+
+    @Benchmark
+    public List<ToDo> prefix() {
+        return this.index.search(search(skewedWord().substring(0, 3) + "*", false, null));
+    }
+
+    @Benchmark
+    public List<ToDo> fuzzy() {
+        String word = skewedWord();
+        return this.index.search(search(word.substring(1) + word.charAt(0), true, null));
+    }
+
+    @Benchmark
+    public List<ToDo> wordWithPriorityAndDeadlineRange() {
+        return this.index.search(search(skewedWord(), false, 2));
+    }
+
+    private static ToDoSearch search(String text, boolean fuzzy, Integer priority) {
+        LocalDate from = priority != null ? LocalDate.of(2024, 1, 1) : null;
+        LocalDate to = priority != null ? LocalDate.of(2025, 12, 31) : null;
+
+        return new ToDoSearch(text, fuzzy, priority, from, to, ToDoSearch.LIMIT_DEFAULT);
+    }
+
+    /**
+     * Zipf-like: low word numbers are much more frequent than high ones.
+     */
+    private String skewedWord() {
+        double u = this.random.nextDouble();
+        return this.vocabulary[(int) (Math.pow(u, 3) * VOCABULARY)];
+    }
+
+    private static String word(int i) {
+        StringBuilder word = new StringBuilder();
+        Random letters = new Random(i);
+        int length = 4 + letters.nextInt(6);
+
+        for (int c = 0; c < length; c++) {
+            word.append((char) ('a' + letters.nextInt(26)));
+        }
+
+        return word.toString();
+    }
+}
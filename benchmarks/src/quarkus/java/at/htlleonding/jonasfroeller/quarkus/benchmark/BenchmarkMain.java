@@ -0,0 +1,23 @@
+package at.htlleonding.jonasfroeller.quarkus.benchmark;
+
+import io.quarkus.runtime.QuarkusApplication;
+import io.quarkus.runtime.annotations.QuarkusMain;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the application built with the {@code benchmarks} Maven profile: runs the JMH
+ * benchmarks selected by the command line inside the started application, so they can call its
+ * beans. Nothing is forked, a forked JVM would have no Quarkus runtime.
+ */
+@QuarkusMain
+public class BenchmarkMain implements QuarkusApplication {
+    @Override
+    public int run(String... args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(options).forks(0).build()).run();
+
+        return 0;
+    }
+}
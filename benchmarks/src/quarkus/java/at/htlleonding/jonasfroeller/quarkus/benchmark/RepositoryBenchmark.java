@@ -0,0 +1,112 @@
+package at.htlleonding.jonasfroeller.quarkus.benchmark;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoBatchResult;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoListRepository;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The read and write paths of {@link ToDoListRepository}, called on the bean of the running
+ * application (see {@link BenchmarkMain}) with its read models, second-level cache, change
+ * events and interceptors. Each call runs in a request context of its own, like an HTTP
+ * request. Table sizes go from 1k to 1M rows; the trials share the database, each one adds the
+ * ToDos missing for its size, and {@code addToDo} grows the table by the ToDos it inserts.
+ * Read models are chosen with the usual configuration, e.g. {@code -Dtodo.priority-index.enabled=true}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(0)
+public class RepositoryBenchmark {
+    private static final int SEED_CHUNK_SIZE = 10_000;
+    private static final LocalDate FIRST_DEADLINE = LocalDate.of(2023, 1, 1);
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static long[] seeded = new long[0];
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int rows;
+
+    private ToDoListRepository repository;
+    private ManagedContext requestContext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.repository = Arc.container().instance(ToDoListRepository.class).get();
+        this.requestContext = Arc.container().requestContext();
+
+        while (seeded.length < this.rows) {
+            List<ToDo> toDos = new ArrayList<>(SEED_CHUNK_SIZE);
+
+            for (int i = seeded.length; i < Math.min(seeded.length + SEED_CHUNK_SIZE, this.rows); i++) {
+                toDos.add(toDo(COUNTER.incrementAndGet()));
+            }
+
+            List<ToDoBatchResult> results = inRequest(() -> this.repository.addToDos(toDos));
+            long[] ids = Arrays.copyOf(seeded, seeded.length + results.size());
+
+            for (int i = 0; i < results.size(); i++) {
+                ids[seeded.length + i] = results.get(i).id();
+            }
+
+            seeded = ids;
+        }
+    }
+
+    @Benchmark
+    public ToDo addToDo() {
+        return inRequest(() -> this.repository.addToDo(toDo(COUNTER.incrementAndGet())));
+    }
+
+    @Benchmark
+    public ToDo getToDo() {
+        long id = seeded[ThreadLocalRandom.current().nextInt(this.rows)];
+
+        return inRequest(() -> this.repository.getToDo(id));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<ToDo> getAllToDos() {
+        return inRequest(() -> this.repository.getAllToDos());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<ToDo> getAllToDosHavingPriority() {
+        int priority = ToDo.TODO_PRIORITY_MIN + ThreadLocalRandom.current().nextInt(ToDo.TODO_PRIORITY_MAX);
+
+        return inRequest(() -> this.repository.getAllToDosHavingPriority(priority));
+    }
+
+    private <T> T inRequest(Supplier<T> call) {
+        this.requestContext.activate();
+
+        try {
+            return call.get();
+        } finally {
+            this.requestContext.terminate();
+        }
+    }
+
+    private static ToDo toDo(int i) {
+        ToDo toDo = new ToDo();
+        toDo.setDescription("Benchmark todo number " + i + ".");
+        toDo.setDeadline(FIRST_DEADLINE.plusDays(i % 3650));
+        toDo.setPriority(ToDo.TODO_PRIORITY_MIN + i % ToDo.TODO_PRIORITY_MAX);
+
+        return toDo;
+    }
+}
@@ -0,0 +1,43 @@
+package at.htlleonding.jonasfroeller.quarkus.boundary;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Sends responses no larger than {@code todo.http.compression-threshold} bytes uncompressed,
+ * compressing them would cost more CPU than it saves on the wire. The decision is made right
+ * before the headers are written, when the HTTP layer has set the {@code Content-Length} of a
+ * body sent in one piece. The route comes first, so its headers-end handler runs after the ones
+ * of the later routes, when Quarkus has already chosen the encoding. Streamed bodies have no
+ * length yet and are compressed as negotiated, so are bodies that are encoded already.
+ */
+@ApplicationScoped
+public class CompressionThresholdFilter {
+    // ahead of every other route: headers-end handlers run in reverse order of registration
+    private static final int ROUTE_ORDER = Integer.MIN_VALUE;
+
+    @ConfigProperty(name = "todo.http.compression-threshold", defaultValue = "1024")
+    long threshold;
+
+    void register(@Observes Router router) {
+        router.route().order(ROUTE_ORDER).handler(this::handle);
+    }
+
+    private void handle(RoutingContext context) {
+        context.addHeadersEndHandler(ignored -> {
+            MultiMap headers = context.response().headers();
+            String length = headers.get(HttpHeaders.CONTENT_LENGTH);
+
+            if (length != null && !headers.contains(HttpHeaders.CONTENT_ENCODING) && Long.parseLong(length) <= this.threshold) {
+                // the HTTP layer skips a response that names an encoding and drops the identity before sending
+                headers.set(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+            }
+        });
+        context.next();
+    }
+}
@@ -0,0 +1,25 @@
+package at.htlleonding.jonasfroeller.quarkus.boundary;
+
+import jakarta.enterprise.util.Nonbinding;
+import jakarta.interceptor.InterceptorBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Counts the SQL statements an endpoint executes and the time it spends in the database.
+ * Exceeding {@link #value()} statements is logged and counted, see
+ * {@link SqlStatementBudgetInterceptor}; the tests expect the count to stay zero.
+ */
+@InterceptorBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SqlStatementBudget {
+    /**
+     * Maximum number of statements per call; unlimited if not given.
+     */
+    @Nonbinding
+    int value() default Integer.MAX_VALUE;
+}
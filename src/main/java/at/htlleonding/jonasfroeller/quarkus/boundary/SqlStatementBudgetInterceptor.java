@@ -0,0 +1,78 @@
+package at.htlleonding.jonasfroeller.quarkus.boundary;
+
+import at.htlleonding.jonasfroeller.quarkus.repository.SqlStatistics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Checks the budget once the endpoint has returned. Its transaction has committed by then, so
+ * an exceeded budget is only logged and counted in {@value #BUDGET_EXCEEDED_COUNTER}, never
+ * turned into a failed response.
+ */
+@SqlStatementBudget
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class SqlStatementBudgetInterceptor {
+    public static final String BUDGET_EXCEEDED_COUNTER = "todo.sql.budget.exceeded";
+    private static final Logger LOG = Logger.getLogger(SqlStatementBudgetInterceptor.class);
+
+    @Inject
+    MeterRegistry registry;
+    @ConfigProperty(name = "todo.sql.repeated-statement-threshold", defaultValue = "10")
+    int repeatedStatementThreshold;
+
+    @AroundInvoke
+    Object count(InvocationContext context) throws Exception {
+        SqlStatistics statistics = SqlStatistics.begin();
+        Object result;
+
+        try {
+            result = context.proceed();
+        } finally {
+            SqlStatistics.end();
+        }
+
+        Method method = context.getMethod();
+        String endpoint = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        LOG.debugf("%s: %d statements, %.2f ms in the database", endpoint, statistics.getStatements(), statistics.getNanos() / 1e6);
+
+        for (Map.Entry<String, Integer> label : statistics.getStatementsByLabel().entrySet()) {
+            if (label.getValue() >= this.repeatedStatementThreshold) {
+                LOG.warnf("%s executed '%s' %d times, likely an N+1 query", endpoint, label.getKey(), label.getValue());
+            }
+        }
+
+        int budget = budget(method);
+        if (statistics.getStatements() > budget) {
+            LOG.warnf("%s executed %d SQL statements, its budget is %d: %s",
+                    endpoint, statistics.getStatements(), budget, statistics.getStatementsByLabel());
+            Counter.builder(BUDGET_EXCEEDED_COUNTER)
+                    .description("Calls that executed more SQL statements than their budget")
+                    .tag("endpoint", endpoint)
+                    .register(this.registry)
+                    .increment();
+        }
+
+        return result;
+    }
+
+    private static int budget(Method method) {
+        SqlStatementBudget budget = method.getAnnotation(SqlStatementBudget.class);
+
+        if (budget == null) {
+            budget = method.getDeclaringClass().getAnnotation(SqlStatementBudget.class);
+        }
+
+        return budget != null ? budget.value() : Integer.MAX_VALUE;
+    }
+}
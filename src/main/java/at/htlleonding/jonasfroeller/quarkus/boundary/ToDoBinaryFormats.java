@@ -0,0 +1,50 @@
+package at.htlleonding.jonasfroeller.quarkus.boundary;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * CBOR and Smile representations of the JSON entities, for clients that ask for them with
+ * {@code Accept}. Both are written by copies of the application's {@link ObjectMapper}, so
+ * they have the same properties and the same {@code LocalDate} handling as the JSON.
+ */
+@Provider
+@Produces({ToDoResource.APPLICATION_CBOR, ToDoResource.APPLICATION_SMILE})
+public class ToDoBinaryFormats implements MessageBodyWriter<Object> {
+    private final ObjectMapper cbor;
+    private final ObjectMapper smile;
+
+    @Inject
+    public ToDoBinaryFormats(ObjectMapper objectMapper) {
+        this.cbor = objectMapper.copyWith(new CBORFactory());
+        this.smile = objectMapper.copyWith(new SmileFactory());
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return mediaType.isCompatible(ToDoResource.APPLICATION_CBOR_TYPE) || mediaType.isCompatible(ToDoResource.APPLICATION_SMILE_TYPE);
+    }
+
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> headers, OutputStream output) throws IOException {
+        ObjectMapper mapper = mediaType.isCompatible(ToDoResource.APPLICATION_CBOR_TYPE) ? this.cbor : this.smile;
+
+        mapper.writerFor(mapper.constructType(genericType))
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(output, entity);
+    }
+}
@@ -0,0 +1,82 @@
+package at.htlleonding.jonasfroeller.quarkus.boundary;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoCacheStatistics;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoIndexCheck;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoListCacheStatistics;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoWriteBehindStatistics;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoListRepository;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoColumns;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoPriorityIndex;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoStatistics;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoWriteBehind;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+@Path("api/todos/diagnostics")
+public class ToDoDiagnosticsResource {
+    @Inject
+    ToDoListRepository toDoListRepository;
+    @Inject
+    ToDoPriorityIndex priorityIndex;
+    @Inject
+    ToDoColumns columns;
+    @Inject
+    ToDoStatistics statistics;
+    @Inject
+    ToDoListResponseCache listCache;
+    @Inject
+    ToDoWriteBehind writeBehind;
+
+    @GET
+    @NonBlocking // in-memory Hibernate statistics only
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/cache")
+    public ToDoCacheStatistics getCacheStatistics() {
+        return this.toDoListRepository.getCacheStatistics();
+    }
+
+    @GET
+    @NonBlocking // cache counters only
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/list-cache")
+    public ToDoListCacheStatistics getListCacheStatistics() {
+        return this.listCache.getStatistics();
+    }
+
+    @GET
+    @Blocking
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/priority-index")
+    public ToDoIndexCheck checkPriorityIndex() {
+        return this.priorityIndex.check();
+    }
+
+    @GET
+    @Blocking
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/columns")
+    public ToDoIndexCheck checkColumns() {
+        return this.columns.check();
+    }
+
+    @GET
+    @Blocking
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/stats")
+    public ToDoIndexCheck checkStatistics() {
+        return this.statistics.check();
+    }
+
+    @GET
+    @NonBlocking // queue counters only
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/write-behind")
+    public ToDoWriteBehindStatistics getWriteBehindStatistics() {
+        return this.writeBehind.getStatistics();
+    }
+}
@@ -0,0 +1,61 @@
+package at.htlleonding.jonasfroeller.quarkus.boundary;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import jakarta.ws.rs.core.EntityTag;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Strong entity tags of ToDos ({@code "<id>.<version>"}) and lists ({@code "<name>.<revision>"}).
+ */
+final class ToDoETags {
+    private ToDoETags() {
+    }
+
+    /**
+     * Null while the ToDo is not committed yet (write-behind mode), it has no version then.
+     */
+    static EntityTag of(ToDo toDo) {
+        if (toDo.getVersion() == null) {
+            return null;
+        }
+
+        return of(toDo.getId(), toDo.getVersion());
+    }
+
+    static EntityTag of(long id, Long version) {
+        return new EntityTag(id + "." + version);
+    }
+
+    static EntityTag ofList(String name, String revision) {
+        return new EntityTag(name + "." + revision);
+    }
+
+    /**
+     * Versions of the given ToDo named by an {@code If-Match} header, or null if the header
+     * does not restrict the version (absent or {@code *}). Weak tags never match.
+     */
+    static Set<Long> versionsMatching(long id, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        Set<Long> versions = new HashSet<>();
+        String prefix = "\"" + id + ".";
+
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                try {
+                    versions.add(Long.parseLong(tag.substring(prefix.length(), tag.length() - 1)));
+                } catch (NumberFormatException e) {
+                    // not one of our tags, it can never match
+                }
+            }
+        }
+
+        return versions;
+    }
+}
@@ -0,0 +1,38 @@
+package at.htlleonding.jonasfroeller.quarkus.boundary;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
+
+public class ToDoExceptionMappers {
+    /**
+     * Invalid ToDo input, e.g. a priority out of range rejected by {@code ToDo.setPriority}.
+     * The Jackson reader wraps the {@link JsonMappingException} into a 400 without a body, so the
+     * validation message is taken from its cause. Other exceptions keep their own response.
+     */
+    @ServerExceptionMapper
+    public Response mapWebApplicationException(WebApplicationException exception) {
+        if (exception.getCause() instanceof JsonMappingException mappingException) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(mappingException.getOriginalMessage())
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+
+        return exception.getResponse();
+    }
+
+    /**
+     * A concurrent write changed the ToDo between our read and our update.
+     */
+    @ServerExceptionMapper
+    public Response mapOptimisticLockException(OptimisticLockException exception) {
+        return Response.status(Response.Status.CONFLICT)
+                .entity("ToDo was changed concurrently!")
+                .type(MediaType.TEXT_PLAIN)
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+package at.htlleonding.jonasfroeller.quarkus.boundary;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoListCacheStatistics;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoVersions;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoWriteBehind;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoded JSON of {@code /list} and of each {@code /list/{priority}}, plain and gzipped, so an
+ * unchanged list is answered with a single buffer write and without a query. An entry is keyed on
+ * the revision of its bucket in {@link ToDoVersions}, the same revision its entity tag names, which
+ * the {@link ToDoChange}s of committed transactions bump: a change of a priority 2 ToDo invalidates
+ * {@code /list} and {@code /list/2}, the other priorities stay cached. Queued
+ * write-behind changes invalidate every bucket. Encodings larger than
+ * {@code todo.list-cache.max-entry-size} are not kept.
+ */
+@ApplicationScoped
+public class ToDoListResponseCache {
+    public static final int ALL = ToDoVersions.ALL;
+
+    /**
+     * {@code gzipped} is null if the JSON is too small to be worth compressing.
+     */
+    public record Entry(long version, long enqueued, byte[] json, byte[] gzipped) {
+        long size() {
+            return this.json.length + (this.gzipped != null ? this.gzipped.length : 0);
+        }
+    }
+
+    @ConfigProperty(name = "todo.list-cache.enabled", defaultValue = "true")
+    boolean enabled;
+    @ConfigProperty(name = "todo.list-cache.max-entry-size", defaultValue = "16M")
+    MemorySize maxEntrySize;
+    @ConfigProperty(name = "todo.http.compression-threshold", defaultValue = "1024")
+    int compressionThreshold;
+    @Inject
+    ToDoVersions toDoVersions;
+    @Inject
+    ToDoWriteBehind writeBehind;
+
+    private final ToDoListJsonWriter writer = new ToDoListJsonWriter();
+    // bucket 0 holds all ToDos, bucket p the ToDos of priority p
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(ToDo.TODO_PRIORITY_MAX + 1);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Bucket of {@code /list/{priority}}, or -1 if the priority is invalid and not worth caching.
+     */
+    public static int bucket(int priority) {
+        return priority >= ToDo.TODO_PRIORITY_MIN && priority <= ToDo.TODO_PRIORITY_MAX ? priority : -1;
+    }
+
+    /**
+     * The cached encoding of the bucket, or a new one of the loaded ToDos on a miss.
+     */
+    public Entry get(int bucket, Supplier<List<ToDo>> load) {
+        // read before loading: a change committed meanwhile leaves the entry outdated, never wrongly current
+        long version = this.toDoVersions.getRevision(bucket);
+        long enqueued = this.writeBehind.getEnqueued();
+        Entry entry = this.entries.get(bucket);
+
+        if (entry != null && entry.version() == version && entry.enqueued() == enqueued) {
+            this.hits.incrementAndGet();
+            return entry;
+        }
+
+        this.misses.incrementAndGet();
+        Entry loaded = encode(version, enqueued, load.get());
+
+        if (loaded.size() <= this.maxEntrySize.asLongValue()) {
+            this.entries.accumulateAndGet(bucket, loaded, (current, next) ->
+                    current != null && current.version() > next.version() ? current : next);
+        }
+
+        return loaded;
+    }
+
+    public ToDoListCacheStatistics getStatistics() {
+        long bytes = 0;
+
+        for (int bucket = 0; bucket < this.entries.length(); bucket++) {
+            Entry entry = this.entries.get(bucket);
+            bytes += entry != null ? entry.size() : 0;
+        }
+
+        return new ToDoListCacheStatistics(this.enabled, this.hits.get(), this.misses.get(), bytes);
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip.
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+
+            if (parameters[0].trim().equalsIgnoreCase("gzip")) {
+                return parameters.length < 2 || !parameters[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+
+        return false;
+    }
+
+    private Entry encode(long version, long enqueued, List<ToDo> toDos) {
+        try {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            this.writer.write(toDos, json);
+
+            if (json.size() <= this.compressionThreshold) {
+                return new Entry(version, enqueued, json.toByteArray(), null);
+            }
+
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream(json.size() / 4);
+
+            try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+                json.writeTo(gzip);
+            }
+
+            return new Entry(version, enqueued, json.toByteArray(), gzipped.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,21 +1,95 @@
 package at.htlleonding.jonasfroeller.quarkus.boundary;
 
 import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoBatchResult;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChangeEvent;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoCursor;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoDueCounts;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoPage;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoQuery;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoQueryPlan;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoSearch;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoStats;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoChangeFeed;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoDeadlineBuckets;
 import at.htlleonding.jonasfroeller.quarkus.repository.ToDoListRepository;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoSearchIndex;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoStatistics;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpVersion;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.*;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 
+/**
+ * Every endpoint that reaches the database through the repository is explicitly
+ * {@link Blocking}: it runs on a worker thread, never on the event loop. Endpoints
+ * answered from memory only are {@link NonBlocking}; they call the in-memory read models
+ * directly, so nothing on the event loop can start a transaction. {@code /list/{priority}}
+ * is non-blocking too and only moves to a worker thread when it has to read the database.
+ * Single-ToDo endpoints declare how many SQL statements they may execute.
+ */
 @Path("api/todos")
+@SqlStatementBudget
 public class ToDoResource {
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+    public static final int DUE_SOON_DAYS_MAX = 366;
+    public static final String QUERY_PLAN_HEADER = "X-Query-Plan";
+    public static final String QUERY_ESTIMATED_ROWS_HEADER = "X-Query-Estimated-Rows";
+    public static final String QUERY_COST_HEADER = "X-Query-Cost";
+    private static final List<Variant> LIST_VARIANTS = Variant
+            .mediaTypes(MediaType.APPLICATION_JSON_TYPE, APPLICATION_CBOR_TYPE, APPLICATION_SMILE_TYPE)
+            .build();
+
     @Context
     UriInfo uriInfo;
+    @Context
+    HttpHeaders httpHeaders;
+    @Context
+    HttpServerRequest serverRequest;
     @Inject
     ToDoListRepository toDoListRepository;
+    @Inject
+    ObjectMapper objectMapper;
+    @Inject
+    ToDoChangeFeed changeFeed;
+    @Inject
+    ToDoListResponseCache listCache;
+    @Inject
+    ToDoSearchIndex searchIndex;
+    @Inject
+    ToDoDeadlineBuckets deadlineBuckets;
+    @Inject
+    ToDoStatistics statistics;
+    @Context
+    Sse sse;
 
     @POST
+    @Blocking
+    @SqlStatementBudget(2) // sequence call per allocation block, insert
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.MEDIA_TYPE_WILDCARD)
     public Response addTodo(ToDo todo) {
@@ -28,53 +102,435 @@ public class ToDoResource {
     }
 
     @PATCH
+    @Blocking
+    @SqlStatementBudget(2) // find, update
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.MEDIA_TYPE_WILDCARD)
     @Path("/{id}")
-    public Response updateToDo(@PathParam("id") int id, ToDo toDo) {
-        this.toDoListRepository.updateToDo(id, toDo);
+    public Response updateToDo(@PathParam("id") long id, ToDo toDo,
+                               @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch) {
+        ToDo toDoUpdated = this.toDoListRepository.updateToDo(id, toDo, ToDoETags.versionsMatching(id, ifMatch));
 
-        return Response.noContent().build();
+        return Response.noContent().tag(ToDoETags.of(toDoUpdated)).build();
     }
 
     @PUT
+    @Blocking
+    @SqlStatementBudget(2) // find, update
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.MEDIA_TYPE_WILDCARD)
     @Path("/{id}")
-    public Response replaceToDo(@PathParam("id") int id, ToDo toDo) {
-        this.toDoListRepository.replaceToDo(id, toDo);
+    public Response replaceToDo(@PathParam("id") long id, ToDo toDo,
+                                @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch) {
+        ToDo toDoReplaced = this.toDoListRepository.replaceToDo(id, toDo, ToDoETags.versionsMatching(id, ifMatch));
 
-        return Response.noContent().build();
+        return Response.noContent().tag(ToDoETags.of(toDoReplaced)).build();
     }
 
     @DELETE
+    @Blocking
+    @SqlStatementBudget(2) // find, update
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.MEDIA_TYPE_WILDCARD)
     @Path("/{id}")
-    public Response removeToDo(@PathParam("id") int id) {
+    public Response removeToDo(@PathParam("id") long id) {
         this.toDoListRepository.removeToDo(id);
 
         return Response.noContent().build();
     }
 
+    @POST
+    @Blocking
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/batch")
+    public List<ToDoBatchResult> addToDos(List<ToDo> toDos) {
+        return this.toDoListRepository.addToDos(requireBatch(toDos));
+    }
+
+    @PATCH
+    @Blocking
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/batch")
+    public List<ToDoBatchResult> updateToDos(List<ToDo> toDos) {
+        return this.toDoListRepository.updateToDos(requireBatch(toDos));
+    }
+
+    @DELETE
+    @Blocking
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/batch")
+    public List<ToDoBatchResult> removeToDos(List<Long> ids) {
+        return this.toDoListRepository.removeToDos(requireBatch(ids));
+    }
+
     @GET
+    @Blocking
+    @SqlStatementBudget(1)
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{id}")
-    public ToDo getToDo(@PathParam("id") int id) {
-        return this.toDoListRepository.getToDo(id);
+    public Response getToDo(@PathParam("id") long id, @Context Request request) {
+        // answer unchanged polls from the known version, without loading or serializing the ToDo
+        Long knownVersion = this.toDoListRepository.getKnownVersion(id);
+        if (knownVersion != null) {
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(ToDoETags.of(id, knownVersion));
+
+            if (notModified != null) {
+                return notModified.tag(ToDoETags.of(id, knownVersion)).build();
+            }
+        }
+
+        ToDo toDo = this.toDoListRepository.getToDo(id);
+        EntityTag tag = ToDoETags.of(toDo);
+
+        if (tag == null) {
+            return Response.ok(toDo).build();
+        }
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+
+        if (notModified != null) {
+            return notModified.tag(tag).build();
+        }
+
+        return Response.ok(toDo).tag(tag).build();
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Blocking
+    @SqlStatementBudget(1)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE})
     @Path("/list")
-    public List<ToDo> getAllToDos() {
-        return this.toDoListRepository.getAllToDos();
+    public Response getAllToDos(@QueryParam("since") Long since,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("after") String after,
+                                @Context Request request) {
+        if (since != null) {
+            if (since < 0) {
+                throw new BadRequestException("Since must not be negative!");
+            }
+
+            return Response.ok(this.toDoListRepository.getChangesSince(since)).build();
+        }
+
+        // paged like /page once the client asks for a limit or a cursor
+        if (limit != null || after != null) {
+            return Response.ok(getToDoPage(after, limit != null ? limit : ToDoPage.LIMIT_DEFAULT)).build();
+        }
+
+        return list("list", ToDoListResponseCache.ALL, request, () -> this.toDoListRepository.getAllToDos());
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Blocking
+    @Produces(APPLICATION_NDJSON)
+    @Path("/export")
+    public StreamingOutput exportToDos() {
+        ObjectWriter writer = this.objectMapper.writerFor(ToDo.class)
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        return output -> {
+            try (JsonGenerator generator = writer.createGenerator(output)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+                this.toDoListRepository.exportToDos(toDo -> {
+                    try {
+                        writer.writeValue(generator, toDo);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                generator.writeRaw('\n');
+            }
+        };
+    }
+
+    /**
+     * Answered on the event loop while the priority index or the columns hold the ToDos, else
+     * on a worker thread.
+     */
+    @GET
+    @NonBlocking
+    @SqlStatementBudget(0)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE})
     @Path("/list/{priority}")
-    public List<ToDo> getToDosFilteredByPriority(@PathParam("priority") int priority) {
-        return this.toDoListRepository.getAllToDosHavingPriority(priority);
+    public Uni<Response> getToDosFilteredByPriority(@PathParam("priority") int priority, @Context Request request) {
+        Uni<Response> response = Uni.createFrom().item(() -> listHavingPriority(priority, request));
+
+        return this.toDoListRepository.readsPrioritiesFromMemory()
+                ? response
+                : response.runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    // not private, so the budget is checked on the thread that reads the ToDos
+    @SqlStatementBudget(1)
+    Response listHavingPriority(int priority, Request request) {
+        return list("list-" + priority, ToDoListResponseCache.bucket(priority), request,
+                () -> this.toDoListRepository.getAllToDosHavingPriority(priority));
+    }
+
+    /**
+     * A list in the format the client accepts. Each format is a representation of its own,
+     * so it has its own entity tag. JSON comes from the {@link ToDoListResponseCache}, gzipped
+     * if the client accepts it and the list is large enough. HTTP/2 responses are compressed by
+     * the HTTP layer itself: it gzips whatever the Content-Encoding header names, a cached gzip
+     * would be compressed twice.
+     */
+    private Response list(String name, int bucket, Request request, Supplier<List<ToDo>> toDos) {
+        Variant variant = request.selectVariant(LIST_VARIANTS);
+        MediaType type = variant != null ? variant.getMediaType() : MediaType.APPLICATION_JSON_TYPE;
+
+        if (!type.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+            name += "-" + type.getSubtype();
+        }
+
+        // the revision of the bucket the cache is keyed on, of all ToDos for an invalid priority
+        EntityTag tag = ToDoETags.ofList(name, this.toDoListRepository.getListRevision(Math.max(bucket, ToDoListResponseCache.ALL)));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+
+        if (notModified != null) {
+            return notModified.tag(tag).build();
+        }
+
+        if (bucket < 0 || !this.listCache.isEnabled() || !type.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+            return Response.ok(new GenericEntity<List<ToDo>>(toDos.get()) {
+            }, type).tag(tag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+
+        ToDoListResponseCache.Entry entry = this.listCache.get(bucket, toDos);
+        Response.ResponseBuilder response = Response.ok().type(type).tag(tag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+
+        if (entry.gzipped() != null && this.serverRequest.version() != HttpVersion.HTTP_2
+                && ToDoListResponseCache.acceptsGzip(this.httpHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING))) {
+            // the identity encoding preset by the HTTP layer would come first, it drops both and compresses again
+            this.serverRequest.response().headers().remove(HttpHeaders.CONTENT_ENCODING);
+
+            return response.entity(entry.gzipped()).header(HttpHeaders.CONTENT_ENCODING, "gzip").build();
+        }
+
+        return response.entity(entry.json()).build();
+    }
+
+    @GET
+    @Blocking
+    @SqlStatementBudget(1)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/page")
+    public ToDoPage getToDoPage(@QueryParam("cursor") String cursor,
+                                @QueryParam("limit") @DefaultValue("" + ToDoPage.LIMIT_DEFAULT) int limit) {
+        requireLimit(limit);
+
+        ToDoCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                after = ToDoCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+        }
+
+        return this.toDoListRepository.getToDoPage(after, limit);
+    }
+
+    @GET
+    @Blocking
+    @SqlStatementBudget(1)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/due")
+    public List<ToDo> getToDosDue(@QueryParam("from") String from,
+                                  @QueryParam("to") String to,
+                                  @QueryParam("limit") @DefaultValue("" + ToDoPage.LIMIT_DEFAULT) int limit) {
+        LocalDate fromDate = parseDate(from);
+        LocalDate toDate = parseDate(to);
+
+        if (fromDate == null || toDate == null) {
+            throw new BadRequestException("From and to are required!");
+        }
+
+        if (toDate.isBefore(fromDate)) {
+            throw new BadRequestException("To must not be before from!");
+        }
+
+        return this.toDoListRepository.getToDosDue(fromDate, toDate, requireLimit(limit));
+    }
+
+    @GET
+    @Blocking
+    @SqlStatementBudget(1)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/overdue")
+    public List<ToDo> getToDosOverdue(@QueryParam("limit") @DefaultValue("" + ToDoPage.LIMIT_DEFAULT) int limit) {
+        return this.toDoListRepository.getToDosDue(null, LocalDate.now(), requireLimit(limit));
+    }
+
+    /**
+     * ToDos due today ({@code days=1}) or within the next {@code days} days.
+     */
+    @GET
+    @Blocking
+    @SqlStatementBudget(1)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/due-soon")
+    public List<ToDo> getToDosDueSoon(@QueryParam("days") @DefaultValue("7") int days,
+                                      @QueryParam("limit") @DefaultValue("" + ToDoPage.LIMIT_DEFAULT) int limit) {
+        if (days < 1 || days > DUE_SOON_DAYS_MAX) {
+            throw new BadRequestException("Days must be between 1 and " + DUE_SOON_DAYS_MAX + "!");
+        }
+
+        LocalDate today = LocalDate.now();
+        return this.toDoListRepository.getToDosDue(today, today.plusDays(days), requireLimit(limit));
+    }
+
+    @GET
+    @NonBlocking // in-memory day buckets only
+    @SqlStatementBudget(0)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/due/counts")
+    public ToDoDueCounts getDueCounts() {
+        return this.deadlineBuckets.counts(LocalDate.now());
+    }
+
+    /**
+     * Server-sent events for every committed change, named after its kind and identified by the
+     * epoch of the running instance and its sequence number. Resumes after {@code Last-Event-ID};
+     * a {@code reset} event means the missed changes are gone, for example after a restart, and
+     * the list has to be reloaded.
+     */
+    @GET
+    @NonBlocking // in-memory change feed only
+    @SqlStatementBudget(0)
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @Path("/changes")
+    public Multi<OutboundSseEvent> streamChanges(@HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId) {
+        return this.changeFeed.subscribe(lastEventId).map(event -> this.sse.newEventBuilder()
+                .id(this.changeFeed.eventId(event))
+                .name(event.isReset() ? "reset" : event.kind().name().toLowerCase())
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(ToDoChangeEvent.class, event)
+                .build());
+    }
+
+    @GET
+    @NonBlocking // in-memory counters only
+    @SqlStatementBudget(0)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/stats")
+    public ToDoStats getStats() {
+        return this.statistics.get(LocalDate.now());
+    }
+
+    @GET
+    @NonBlocking // in-memory search index only
+    @SqlStatementBudget(0)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/search")
+    public List<ToDo> searchToDos(@QueryParam("q") String text,
+                                  @QueryParam("fuzzy") boolean fuzzy,
+                                  @QueryParam("priority") Integer priority,
+                                  @QueryParam("from") String from,
+                                  @QueryParam("to") String to,
+                                  @QueryParam("limit") @DefaultValue("" + ToDoSearch.LIMIT_DEFAULT) int limit) {
+        if (text == null || text.isBlank()) {
+            throw new BadRequestException("Query must not be empty!");
+        }
+
+        if (priority != null && (priority < ToDo.TODO_PRIORITY_MIN || priority > ToDo.TODO_PRIORITY_MAX)) {
+            throw new BadRequestException("Priority must be between 1 and 3!");
+        }
+
+        if (limit < 1 || limit > ToDoSearch.LIMIT_MAX) {
+            throw new BadRequestException("Limit must be between 1 and " + ToDoSearch.LIMIT_MAX + "!");
+        }
+
+        return this.searchIndex.search(new ToDoSearch(text, fuzzy, priority, parseDate(from), parseDate(to), limit));
+    }
+
+    /**
+     * Evaluates a {@link ToDoQuery} with the plan estimated to be cheaper. The plan, the estimated
+     * number of candidates and the estimated costs of both plans (in microseconds) are returned
+     * in the {@code X-Query-*} headers.
+     */
+    @POST
+    @Blocking
+    @SqlStatementBudget(1)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/query")
+    public Response queryToDos(ToDoQuery query) {
+        requireQuery(query);
+
+        ToDoQueryPlan plan = this.toDoListRepository.planQuery(query);
+        List<ToDo> toDos = this.toDoListRepository.queryToDos(query, plan);
+
+        return Response.ok(new GenericEntity<List<ToDo>>(toDos) {
+                })
+                .header(QUERY_PLAN_HEADER, plan.plan())
+                .header(QUERY_ESTIMATED_ROWS_HEADER, plan.estimatedRows())
+                .header(QUERY_COST_HEADER, String.format(Locale.ROOT, "%s=%s, %s=%.1f",
+                        ToDoQuery.PLAN_MEMORY,
+                        Double.isInfinite(plan.memoryCost()) ? "none" : String.format(Locale.ROOT, "%.1f", plan.memoryCost()),
+                        ToDoQuery.PLAN_DATABASE,
+                        plan.databaseCost()))
+                .build();
+    }
+
+    private static void requireQuery(ToDoQuery query) {
+        if (query == null) {
+            throw new BadRequestException("Invalid query input!");
+        }
+
+        if (query.hasPriorities() && query.priorities().stream()
+                .anyMatch(priority -> priority == null || priority < ToDo.TODO_PRIORITY_MIN || priority > ToDo.TODO_PRIORITY_MAX)) {
+            throw new BadRequestException("Priority must be between 1 and 3!");
+        }
+
+        if (query.from() != null && query.to() != null && query.to().isBefore(query.from())) {
+            throw new BadRequestException("To must not be before from!");
+        }
+
+        if (query.sort() != null && !query.sort().equals(ToDoQuery.SORT_DEADLINE) && !query.sort().equals(ToDoQuery.SORT_PRIORITY)) {
+            throw new BadRequestException("Sort must be " + ToDoQuery.SORT_DEADLINE + " or " + ToDoQuery.SORT_PRIORITY + "!");
+        }
+
+        if (query.plan() != null && !query.plan().equals(ToDoQuery.PLAN_MEMORY) && !query.plan().equals(ToDoQuery.PLAN_DATABASE)) {
+            throw new BadRequestException("Plan must be " + ToDoQuery.PLAN_MEMORY + " or " + ToDoQuery.PLAN_DATABASE + "!");
+        }
+
+        if (query.limitOrDefault() < 1 || query.limitOrDefault() > ToDoQuery.LIMIT_MAX) {
+            throw new BadRequestException("Limit must be between 1 and " + ToDoQuery.LIMIT_MAX + "!");
+        }
+    }
+
+    private static int requireLimit(int limit) {
+        if (limit < 1 || limit > ToDoPage.LIMIT_MAX) {
+            throw new BadRequestException("Limit must be between 1 and " + ToDoPage.LIMIT_MAX + "!");
+        }
+
+        return limit;
+    }
+
+    private static LocalDate parseDate(String date) {
+        if (date == null || date.isBlank()) {
+            return null;
+        }
+
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid date '" + date + "'!");
+        }
+    }
+
+    private static <T> List<T> requireBatch(List<T> items) {
+        if (items == null || items.isEmpty()) {
+            throw new BadRequestException("Batch must contain at least one item!");
+        }
+
+        return items;
     }
 }
@@ -1,35 +1,125 @@
 package at.htlleonding.jonasfroeller.quarkus.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDate;
+import java.util.Locale;
 
 @Entity
+@Cacheable
+@JsonPropertyOrder({"id", "version", "revision", "description", "deadline", "priority"}) // the order ToDoListJsonWriter writes
+@Table(indexes = {
+        @Index(name = "todo_deadline_id_idx", columnList = "deadline, id"), // ToDo.getAll, ToDo.getPage.*, ToDo.getDue.*
+        @Index(name = "todo_priority_deadline_id_idx", columnList = "priority, deadline, id"), // ToDo.getAll.havingPriority
+        @Index(name = "todo_revision_idx", columnList = "revision") // ToDo.getChanged.between, ToDo.deleteRemoved.upTo
+})
 
 @NamedQueries({
-        @NamedQuery(name = ToDo.QUERY_GET_ALL, query = "SELECT t FROM ToDo t ORDER BY t.deadline"),
-        @NamedQuery(name = ToDo.QUERY_GET_ALL_HAVING_PRIORITY, query = "SELECT t FROM ToDo t WHERE priority = :priority ORDER BY t.deadline"),
-        @NamedQuery(name = ToDo.QUERY_GET_USING_ID, query = "SELECT t FROM ToDo t WHERE id = :id")
+        @NamedQuery(name = ToDo.QUERY_GET_ALL, query = "SELECT t FROM ToDo t WHERE t.removed = false ORDER BY t.deadline NULLS FIRST, t.id",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_ALL)),
+        @NamedQuery(name = ToDo.QUERY_GET_ALL_HAVING_PRIORITY, query = "SELECT t FROM ToDo t WHERE t.priority = :priority AND t.removed = false ORDER BY t.deadline NULLS FIRST, t.id",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_ALL_HAVING_PRIORITY)),
+        @NamedQuery(name = ToDo.QUERY_GET_USING_ID, query = "SELECT t FROM ToDo t WHERE id = :id AND t.removed = false",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_USING_ID)),
+        @NamedQuery(name = ToDo.QUERY_GET_PAGE_FIRST, query = "SELECT t FROM ToDo t WHERE t.removed = false ORDER BY t.deadline NULLS FIRST, t.id",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_PAGE_FIRST)),
+        @NamedQuery(name = ToDo.QUERY_GET_PAGE_AFTER, query = "SELECT t FROM ToDo t WHERE t.removed = false AND (t.deadline > :deadline OR (t.deadline = :deadline AND t.id > :id)) ORDER BY t.deadline NULLS FIRST, t.id",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_PAGE_AFTER)),
+        @NamedQuery(name = ToDo.QUERY_GET_PAGE_AFTER_WITHOUT_DEADLINE, query = "SELECT t FROM ToDo t WHERE t.removed = false AND (t.deadline IS NOT NULL OR t.id > :id) ORDER BY t.deadline NULLS FIRST, t.id",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_PAGE_AFTER_WITHOUT_DEADLINE)),
+        @NamedQuery(name = ToDo.QUERY_GET_DUE_BETWEEN, query = "SELECT t FROM ToDo t WHERE t.deadline >= :from AND t.deadline < :to AND t.removed = false ORDER BY t.deadline, t.id",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_DUE_BETWEEN)),
+        @NamedQuery(name = ToDo.QUERY_GET_DUE_BEFORE, query = "SELECT t FROM ToDo t WHERE t.deadline < :to AND t.removed = false ORDER BY t.deadline, t.id",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_DUE_BEFORE)),
+        @NamedQuery(name = ToDo.QUERY_COUNT_BY_DEADLINE, query = "SELECT t.deadline, count(t) FROM ToDo t WHERE t.deadline IS NOT NULL AND t.removed = false GROUP BY t.deadline",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_COUNT_BY_DEADLINE)),
+        @NamedQuery(name = ToDo.QUERY_COUNT_BY_PRIORITY, query = "SELECT t.priority, count(t), count(t.deadline) FROM ToDo t WHERE t.removed = false GROUP BY t.priority",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_COUNT_BY_PRIORITY)),
+        @NamedQuery(name = ToDo.QUERY_GET_CHANGED_BETWEEN, query = "SELECT t FROM ToDo t WHERE t.revision > :since AND t.revision <= :until ORDER BY t.revision, t.id",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_CHANGED_BETWEEN)),
+        @NamedQuery(name = ToDo.QUERY_GET_MAX_REVISION, query = "SELECT max(t.revision) FROM ToDo t",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_GET_MAX_REVISION)),
+        @NamedQuery(name = ToDo.QUERY_DELETE_REMOVED_UP_TO, query = "DELETE FROM ToDo t WHERE t.removed = true AND t.revision <= :revision",
+                hints = @QueryHint(name = HibernateHints.HINT_COMMENT, value = ToDo.QUERY_DELETE_REMOVED_UP_TO))
 })
 
 public class ToDo { // POJO :)
     public static final String QUERY_GET_USING_ID = "ToDo.getID";
     public static final String QUERY_GET_ALL = "ToDo.getAll";
     public static final String QUERY_GET_ALL_HAVING_PRIORITY = "ToDo.getAll.havingPriority";
+    public static final String QUERY_GET_PAGE_FIRST = "ToDo.getPage.first";
+    public static final String QUERY_GET_PAGE_AFTER = "ToDo.getPage.after";
+    public static final String QUERY_GET_PAGE_AFTER_WITHOUT_DEADLINE = "ToDo.getPage.afterWithoutDeadline";
+    public static final String QUERY_GET_DUE_BETWEEN = "ToDo.getDue.between";
+    public static final String QUERY_GET_DUE_BEFORE = "ToDo.getDue.before";
+    public static final String QUERY_COUNT_BY_DEADLINE = "ToDo.countByDeadline";
+    public static final String QUERY_COUNT_BY_PRIORITY = "ToDo.countByPriority";
+    public static final String QUERY_GET_CHANGED_BETWEEN = "ToDo.getChanged.between";
+    public static final String QUERY_GET_MAX_REVISION = "ToDo.getMaxRevision";
+    public static final String QUERY_DELETE_REMOVED_UP_TO = "ToDo.deleteRemoved.upTo";
+    public static final String QUERY_FILTERED = "ToDo.filtered"; // Criteria query of ToDoQueryEngine
+    public static final String ID_GENERATOR = "ToDo_SEQ";
     public static final int TODO_PRIORITY_MIN = 1;
     public static final int TODO_PRIORITY_MAX = 3;
+    public static final int DESCRIPTION_LENGTH_MAX = 500;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(generator = ID_GENERATOR)
+    @GenericGenerator(name = ID_GENERATOR, type = ToDoIdGenerator.class) // strategy and allocation size: todo.id.*
     private Long id;
-
+    @Version
+    private Long version;
+    @Transient
+    private Long assignedId;
+    private long revision;
+    private boolean removed;
+
+    @Column(length = DESCRIPTION_LENGTH_MAX)
     private String description;
+    // lower-casing may double the length, e.g. of U+0130
+    @Column(length = DESCRIPTION_LENGTH_MAX * 2)
+    private String foldedDescription;
     private LocalDate deadline;
+    @JdbcTypeCode(SqlTypes.TINYINT)
     private int priority;
 
     public ToDo() {
     }
 
+    public ToDo(ToDo toDo) {
+        this.id = toDo.id;
+        this.assignedId = toDo.assignedId;
+        this.version = toDo.version;
+        this.description = toDo.description;
+        this.foldedDescription = toDo.foldedDescription;
+        this.deadline = toDo.deadline;
+        this.priority = toDo.priority;
+        this.revision = toDo.revision;
+        this.removed = toDo.removed;
+    }
+
+    /**
+     * A committed ToDo as a read model keeps it, e.g. {@code ToDoColumns}; nothing is validated.
+     */
+    public static ToDo restore(long id, Long version, String description, LocalDate deadline, int priority, long revision) {
+        ToDo toDo = new ToDo();
+        toDo.id = id;
+        toDo.version = version;
+        toDo.description = description;
+        toDo.foldedDescription = foldDescription(description);
+        toDo.deadline = deadline;
+        toDo.priority = priority;
+        toDo.revision = revision;
+
+        return toDo;
+    }
+
     public void update(ToDo toDo) {
         setDescription(toDo.description);
         setDeadline(toDo.deadline);
@@ -41,7 +131,20 @@ public class ToDo { // POJO :)
     }
 
     public void setDescription(String description) {
-        this.description = description;
+        if (description == null || description.length() <= DESCRIPTION_LENGTH_MAX) {
+            this.description = description;
+            this.foldedDescription = foldDescription(description);
+        } else {
+            throw new IllegalArgumentException("Description must not be longer than " + DESCRIPTION_LENGTH_MAX + " characters!");
+        }
+    }
+
+    /**
+     * The description as case-insensitive filters compare it. It is stored next to the
+     * description, so the database compares exactly what the in-memory filters compare.
+     */
+    public static String foldDescription(String description) {
+        return description != null ? description.toLowerCase(Locale.ROOT) : null;
     }
 
     public LocalDate getDeadline() {
@@ -64,7 +167,61 @@ public class ToDo { // POJO :)
         }
     }
 
+    /**
+     * False if the priority was never set, e.g. it was missing in the JSON input.
+     */
+    public boolean hasValidPriority() {
+        return priority >= TODO_PRIORITY_MIN && priority <= TODO_PRIORITY_MAX;
+    }
+
     public Long getId() {
-        return id;
+        return id != null ? id : assignedId;
+    }
+
+    /**
+     * Gives the ToDo an id before it is persisted; {@link ToDoIdGenerator} keeps it instead of
+     * generating one. Used where the id must be known before the insert happens. The id field
+     * itself stays empty until the insert, Hibernate treats a new ToDo with an id as detached.
+     */
+    public void assignId(long id) {
+        this.assignedId = id;
+    }
+
+    public boolean hasAssignedId() {
+        return assignedId != null;
+    }
+
+    /**
+     * Written by Hibernate only; a version in the JSON input is ignored.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Revision of the transaction that last changed the ToDo, see {@code ToDoRevisions}.
+     * Ignored in JSON input, like the version.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public long getRevision() {
+        return revision;
+    }
+
+    public void markChanged(long revision) {
+        this.revision = revision;
+    }
+
+    /**
+     * Turns the ToDo into a tombstone: it is left out of every query but the delta sync, until
+     * the tombstone is compacted.
+     */
+    public void markRemoved(long revision) {
+        this.removed = true;
+        this.revision = revision;
+    }
+
+    public boolean hasBeenRemoved() {
+        return removed;
     }
 }
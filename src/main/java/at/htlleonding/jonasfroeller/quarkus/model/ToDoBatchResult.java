@@ -0,0 +1,15 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+/**
+ * Outcome of one item of a batch request. {@code index} is the position of the item in the
+ * request and {@code status} the HTTP status the equivalent single-item request would return.
+ */
+public record ToDoBatchResult(int index, Long id, int status, String message) {
+    public static ToDoBatchResult succeeded(int index, Long id, int status) {
+        return new ToDoBatchResult(index, id, status, null);
+    }
+
+    public static ToDoBatchResult failed(int index, Long id, int status, String message) {
+        return new ToDoBatchResult(index, id, status, message);
+    }
+}
@@ -0,0 +1,8 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+/**
+ * Counters of the second-level cache region holding ToDo entities. {@code evictions}
+ * counts entries dropped by the region's size or idle bound.
+ */
+public record ToDoCacheStatistics(long hits, long misses, long puts, long size, long evictions) {
+}
@@ -0,0 +1,35 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+/**
+ * Fired by the repository for every write. {@code previous} is the state before and
+ * {@code current} the state after the write, both as detached copies; {@code previous}
+ * is null for created and {@code current} is null for removed ToDos.
+ */
+public record ToDoChange(Kind kind, ToDo previous, ToDo current) {
+    public enum Kind {
+        CREATED,
+        UPDATED,
+        REPLACED,
+        REMOVED
+    }
+
+    public static ToDoChange created(ToDo toDo) {
+        return new ToDoChange(Kind.CREATED, null, new ToDo(toDo));
+    }
+
+    public static ToDoChange updated(ToDo previous, ToDo current) {
+        return new ToDoChange(Kind.UPDATED, previous, new ToDo(current));
+    }
+
+    public static ToDoChange replaced(ToDo previous, ToDo current) {
+        return new ToDoChange(Kind.REPLACED, previous, new ToDo(current));
+    }
+
+    public static ToDoChange removed(ToDo toDo) {
+        return new ToDoChange(Kind.REMOVED, new ToDo(toDo), null);
+    }
+
+    public Long id() {
+        return this.current != null ? this.current.getId() : this.previous.getId();
+    }
+}
@@ -0,0 +1,20 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+/**
+ * A committed {@link ToDoChange} as sent by {@code /api/todos/changes}, numbered in commit order.
+ * {@code toDo} is the new state, null for removed ToDos. A reset has neither kind nor id: the
+ * changes the client asked for are no longer available and it has to reload the list.
+ */
+public record ToDoChangeEvent(long sequence, ToDoChange.Kind kind, Long id, ToDo toDo) {
+    public static ToDoChangeEvent of(long sequence, ToDoChange change) {
+        return new ToDoChangeEvent(sequence, change.kind(), change.id(), change.current());
+    }
+
+    public static ToDoChangeEvent reset(long sequence) {
+        return new ToDoChangeEvent(sequence, null, null, null);
+    }
+
+    public boolean isReset() {
+        return this.kind == null;
+    }
+}
@@ -0,0 +1,38 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Position of the last ToDo of a page in the (deadline, id) order.
+ * Clients only ever see the opaque {@link #encode() encoded} form.
+ */
+public record ToDoCursor(LocalDate deadline, long id) {
+    private static final String NO_DEADLINE = "-";
+
+    public static ToDoCursor of(ToDo toDo) {
+        return new ToDoCursor(toDo.getDeadline(), toDo.getId());
+    }
+
+    public String encode() {
+        String deadlinePart = this.deadline == null ? NO_DEADLINE : Long.toString(this.deadline.toEpochDay());
+        String raw = deadlinePart + ":" + this.id;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ToDoCursor decode(String encoded) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            String deadlinePart = raw.substring(0, separator);
+            long id = Long.parseLong(raw.substring(separator + 1));
+            LocalDate deadline = deadlinePart.equals(NO_DEADLINE) ? null : LocalDate.ofEpochDay(Long.parseLong(deadlinePart));
+
+            return new ToDoCursor(deadline, id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor!", e);
+        }
+    }
+}
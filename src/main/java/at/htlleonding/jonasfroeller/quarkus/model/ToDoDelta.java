@@ -0,0 +1,15 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+import java.util.List;
+
+/**
+ * Answer of a delta sync: the ToDos changed and the ids of the ToDos removed after the client's
+ * revision. The client stores {@code revision} and sends it as {@code since} next time. If
+ * {@code full} is set, the client's revision was too old or unknown: {@code changed} is the
+ * whole list and replaces everything the client has.
+ */
+public record ToDoDelta(long revision, boolean full, List<ToDo> changed, List<Long> removed) {
+    public static ToDoDelta full(long revision, List<ToDo> toDos) {
+        return new ToDoDelta(revision, true, toDos, List.of());
+    }
+}
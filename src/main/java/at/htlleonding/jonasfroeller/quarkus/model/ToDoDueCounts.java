@@ -0,0 +1,9 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+import java.time.LocalDate;
+
+/**
+ * Number of ToDos by due date relative to {@code today}; {@code dueThisWeek} covers today and the six days after it.
+ */
+public record ToDoDueCounts(LocalDate today, long overdue, long dueToday, long dueThisWeek) {
+}
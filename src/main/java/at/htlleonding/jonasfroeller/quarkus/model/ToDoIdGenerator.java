@@ -0,0 +1,66 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Id generator of {@link ToDo} whose strategy is chosen by configuration when the
+ * persistence unit starts:
+ * <ul>
+ *     <li>{@code todo.id.strategy=pooled} (default) or {@code pooled-lo}: the {@code ToDo_SEQ}
+ *     sequence with the matching Hibernate optimizer, fetching {@code todo.id.allocation-size}
+ *     ids per sequence call</li>
+ *     <li>{@code todo.id.strategy=time-ordered}: {@link TimeOrderedIds}, which needs no
+ *     database round trip and no lock at all</li>
+ * </ul>
+ * The sequence is created in every mode, so switching strategies needs no schema change.
+ * An id given with {@link ToDo#assignId(long)} is always kept.
+ */
+@RegisterForReflection
+public class ToDoIdGenerator extends SequenceStyleGenerator {
+    public static final String STRATEGY_POOLED = "pooled";
+    public static final String STRATEGY_POOLED_LO = "pooled-lo";
+    public static final String STRATEGY_TIME_ORDERED = "time-ordered";
+
+    private boolean timeOrdered;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        Config config = ConfigProvider.getConfig();
+        String strategy = config.getOptionalValue("todo.id.strategy", String.class).orElse(STRATEGY_POOLED);
+        int allocationSize = config.getOptionalValue("todo.id.allocation-size", Integer.class).orElse(50);
+
+        switch (strategy) {
+            case STRATEGY_POOLED, STRATEGY_POOLED_LO -> this.timeOrdered = false;
+            case STRATEGY_TIME_ORDERED -> this.timeOrdered = true;
+            default -> throw new MappingException("Unknown todo.id.strategy '" + strategy + "'!");
+        }
+
+        parameters.put(SEQUENCE_PARAM, ToDo.ID_GENERATOR);
+        parameters.put(INCREMENT_PARAM, Integer.toString(allocationSize));
+        parameters.put(OPT_PARAM, this.timeOrdered ? STRATEGY_POOLED : strategy);
+
+        super.configure(type, parameters, serviceRegistry);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        if (object instanceof ToDo toDo && toDo.hasAssignedId()) {
+            return toDo.getId();
+        }
+
+        if (this.timeOrdered) {
+            return TimeOrderedIds.next();
+        }
+
+        return super.generate(session, object);
+    }
+}
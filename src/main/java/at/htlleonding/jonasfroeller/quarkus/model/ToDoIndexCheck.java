@@ -0,0 +1,7 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+/**
+ * Result of comparing an in-memory index with the database.
+ */
+public record ToDoIndexCheck(boolean enabled, boolean consistent, long indexed, long stored) {
+}
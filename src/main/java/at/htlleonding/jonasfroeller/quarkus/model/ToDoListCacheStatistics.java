@@ -0,0 +1,7 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+/**
+ * Counters of the cache of encoded list responses; {@code bytes} is the size of the cached encodings.
+ */
+public record ToDoListCacheStatistics(boolean enabled, long hits, long misses, long bytes) {
+}
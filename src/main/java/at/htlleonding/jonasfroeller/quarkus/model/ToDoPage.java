@@ -0,0 +1,11 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+import java.util.List;
+
+/**
+ * One page of ToDos ordered by deadline. {@code nextCursor} is null on the last page.
+ */
+public record ToDoPage(List<ToDo> items, String nextCursor) {
+    public static final int LIMIT_DEFAULT = 50;
+    public static final int LIMIT_MAX = 500;
+}
@@ -0,0 +1,78 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * An ad-hoc filter over all ToDos, posted as JSON. Every field is optional: {@code priorities}
+ * is a set of allowed priorities, {@code from}..{@code to} an inclusive deadline range (ToDos
+ * without a deadline never match a range), {@code contains} and {@code prefix} match the
+ * description ignoring case, see {@link ToDo#foldDescription(String)}. {@code sort} is
+ * {@value #SORT_DEADLINE} (the default) or {@value #SORT_PRIORITY}, both with ties in deadline
+ * and id order. {@code plan} forces {@value #PLAN_MEMORY} or {@value #PLAN_DATABASE} instead
+ * of the cheaper one.
+ */
+public record ToDoQuery(Set<Integer> priorities,
+                        LocalDate from,
+                        LocalDate to,
+                        String contains,
+                        String prefix,
+                        String sort,
+                        String plan,
+                        Integer limit) {
+    public static final String SORT_DEADLINE = "deadline";
+    public static final String SORT_PRIORITY = "priority";
+    public static final String PLAN_MEMORY = "memory";
+    public static final String PLAN_DATABASE = "database";
+    public static final int LIMIT_DEFAULT = 50;
+    public static final int LIMIT_MAX = 500;
+
+    public boolean hasPriorities() {
+        return this.priorities != null && !this.priorities.isEmpty();
+    }
+
+    public boolean hasDeadlineRange() {
+        return this.from != null || this.to != null;
+    }
+
+    public boolean hasDescriptionFilter() {
+        return this.contains != null || this.prefix != null;
+    }
+
+    public boolean sortsByPriority() {
+        return SORT_PRIORITY.equals(this.sort);
+    }
+
+    public int limitOrDefault() {
+        return this.limit != null ? this.limit : LIMIT_DEFAULT;
+    }
+
+    public boolean matches(ToDo toDo) {
+        if (hasPriorities() && !this.priorities.contains(toDo.getPriority())) {
+            return false;
+        }
+
+        if (hasDeadlineRange() && (toDo.getDeadline() == null
+                || (this.from != null && toDo.getDeadline().isBefore(this.from))
+                || (this.to != null && toDo.getDeadline().isAfter(this.to)))) {
+            return false;
+        }
+
+        return matchesDescription(toDo.getDescription());
+    }
+
+    public boolean matchesDescription(String description) {
+        if (!hasDescriptionFilter()) {
+            return true;
+        }
+
+        if (description == null) {
+            return false;
+        }
+
+        String folded = ToDo.foldDescription(description);
+
+        return (this.contains == null || folded.contains(ToDo.foldDescription(this.contains)))
+                && (this.prefix == null || folded.startsWith(ToDo.foldDescription(this.prefix)));
+    }
+}
@@ -0,0 +1,12 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+/**
+ * How a {@link ToDoQuery} is evaluated: by a scan of the in-memory columns or by a database query.
+ * {@code estimatedRows} is the number of ToDos passing the priority and deadline filters; the
+ * costs are estimates in microseconds, {@code memoryCost} is infinite if the columns are unavailable.
+ */
+public record ToDoQueryPlan(String plan, long estimatedRows, double memoryCost, double databaseCost) {
+    public boolean usesMemory() {
+        return ToDoQuery.PLAN_MEMORY.equals(this.plan);
+    }
+}
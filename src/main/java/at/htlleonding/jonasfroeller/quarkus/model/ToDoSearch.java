@@ -0,0 +1,18 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+import java.time.LocalDate;
+
+/**
+ * A full-text search over ToDo descriptions. Every word of {@code text} must occur in the
+ * description: a word ending in {@code *} as a prefix of at least {@link #PREFIX_LENGTH_MIN}
+ * characters, any other word exactly or, with {@code fuzzy}, within a small edit distance (words
+ * shorter than 4 letters still match exactly, and only words with the same first letter are
+ * considered). {@code priority} and the inclusive deadline
+ * range {@code from}..{@code to} are optional filters; ToDos without a deadline never match a range.
+ */
+public record ToDoSearch(String text, boolean fuzzy, Integer priority, LocalDate from, LocalDate to, int limit) {
+    public static final int LIMIT_DEFAULT = 50;
+    public static final int LIMIT_MAX = 500;
+    public static final int PREFIX_LENGTH_MIN = 2;
+    public static final int PREFIX_WORDS_MAX = 1000;
+}
@@ -0,0 +1,18 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Summary counts of all ToDos. {@code byPriority} has an entry for every priority,
+ * {@code byMonth} one per month with deadlines ({@code "2023-11"}) in ascending order;
+ * overdue and due-this-week counts are relative to {@code today}.
+ */
+public record ToDoStats(LocalDate today,
+                        long total,
+                        Map<Integer, Long> byPriority,
+                        long withoutDeadline,
+                        long overdue,
+                        long dueThisWeek,
+                        Map<String, Long> byMonth) {
+}
@@ -0,0 +1,15 @@
+package at.htlleonding.jonasfroeller.quarkus.model;
+
+/**
+ * State of the write-behind queue: current depth, committed groups and their sizes, and the
+ * accepted writes that were dropped because they could not be committed.
+ */
+public record ToDoWriteBehindStatistics(boolean enabled,
+                                        int queueDepth,
+                                        int queueCapacity,
+                                        long commits,
+                                        long writes,
+                                        long dropped,
+                                        int lastBatchSize,
+                                        int maxBatchSize) {
+}
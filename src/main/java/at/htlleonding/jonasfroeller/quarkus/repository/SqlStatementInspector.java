@@ -0,0 +1,42 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Remembers the SQL Hibernate is about to execute on this thread, so {@link SqlStatementListener}
+ * can name the statement it times. Registered through
+ * {@code hibernate.session_factory.statement_inspector}; the SQL is passed on unchanged.
+ */
+@RegisterForReflection
+public class SqlStatementInspector implements StatementInspector {
+    private static final ThreadLocal<String> LAST = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        LAST.set(sql);
+        return sql;
+    }
+
+    static String last() {
+        String sql = LAST.get();
+        return sql != null ? sql : "";
+    }
+
+    /**
+     * The leading SQL comment ({@code hibernate.use_sql_comments}), which is the name of a named
+     * query or e.g. {@code load ToDo}; the first word of the statement if there is no comment.
+     */
+    static String label(String sql) {
+        if (sql.startsWith("/* ")) {
+            int end = sql.indexOf(" */");
+
+            if (end > 0) {
+                return sql.substring(3, end);
+            }
+        }
+
+        int space = sql.indexOf(' ');
+        return space > 0 ? sql.substring(0, space) : sql;
+    }
+}
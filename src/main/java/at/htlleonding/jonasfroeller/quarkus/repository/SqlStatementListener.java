@@ -0,0 +1,56 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.hibernate.SessionEventListener;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+
+/**
+ * Times every JDBC execution of a session and adds it to the {@link SqlStatistics} of the
+ * current thread. Executions slower than {@code todo.sql.slow-threshold} are logged with their
+ * label. Hibernate creates one instance per session ({@code hibernate.session.events.auto}).
+ */
+@RegisterForReflection
+public class SqlStatementListener implements SessionEventListener {
+    private static final Logger LOG = Logger.getLogger(SqlStatementListener.class);
+    private static final long SLOW_THRESHOLD = ConfigProvider.getConfig()
+            .getOptionalValue("todo.sql.slow-threshold", Duration.class)
+            .orElse(Duration.ofMillis(100))
+            .toNanos();
+
+    private long start;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        this.start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        executed();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        this.start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        executed();
+    }
+
+    private void executed() {
+        long nanos = System.nanoTime() - this.start;
+        String sql = SqlStatementInspector.last();
+        String label = SqlStatementInspector.label(sql);
+
+        SqlStatistics.record(label, nanos);
+
+        if (nanos > SLOW_THRESHOLD) {
+            LOG.warnf("Slow SQL (%d ms) %s: %s", nanos / 1_000_000, label, sql);
+        }
+    }
+}
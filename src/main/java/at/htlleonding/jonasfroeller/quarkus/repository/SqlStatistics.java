@@ -0,0 +1,55 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SQL statements executed by the current thread between {@link #begin()} and {@link #end()},
+ * with the time spent waiting for the database. Filled by {@link SqlStatementListener}.
+ */
+public final class SqlStatistics {
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long nanos;
+    private final Map<String, Integer> statementsByLabel = new HashMap<>();
+
+    private SqlStatistics() {
+    }
+
+    public static SqlStatistics begin() {
+        SqlStatistics statistics = new SqlStatistics();
+        CURRENT.set(statistics);
+
+        return statistics;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    static void record(String label, long nanos) {
+        SqlStatistics statistics = CURRENT.get();
+
+        if (statistics != null) {
+            statistics.statements++;
+            statistics.nanos += nanos;
+            statistics.statementsByLabel.merge(label, 1, Integer::sum);
+        }
+    }
+
+    public int getStatements() {
+        return this.statements;
+    }
+
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    /**
+     * Executions per statement label, e.g. the name of a named query; see {@link SqlStatementInspector#label(String)}.
+     */
+    public Map<String, Integer> getStatementsByLabel() {
+        return this.statementsByLabel;
+    }
+}
@@ -0,0 +1,136 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChangeEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Numbers the {@link ToDoChange}s of committed transactions and hands them to the subscribers
+ * of {@code /api/todos/changes}. The last {@code todo.changes.replay-capacity} events are kept
+ * in a ring buffer, so a client can resume after the last event it has seen.
+ * <p>
+ * Event ids are {@code <epoch>-<sequence>}. The epoch is taken at startup and the sequence
+ * starts over with it, so an id from before a restart is recognized by its epoch and answered
+ * with a reset instead of being mistaken for a sequence number of this run.
+ * <p>
+ * Publishing only appends to the ring buffer and to a bounded buffer per subscriber; events are
+ * delivered on another thread. A subscriber that falls {@code todo.changes.subscriber-buffer}
+ * events behind is disconnected instead of slowing down the writers, and resumes from its last
+ * event when it reconnects.
+ */
+@ApplicationScoped
+public class ToDoChangeFeed {
+    private static final Logger LOG = Logger.getLogger(ToDoChangeFeed.class);
+
+    @ConfigProperty(name = "todo.changes.replay-capacity", defaultValue = "1000")
+    int replayCapacity;
+    @ConfigProperty(name = "todo.changes.subscriber-buffer", defaultValue = "256")
+    int subscriberBuffer;
+
+    private final List<MultiEmitter<? super ToDoChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private ToDoChangeEvent[] replay;
+    private long sequence;
+
+    @PostConstruct
+    void init() {
+        this.replay = new ToDoChangeEvent[this.replayCapacity];
+    }
+
+    synchronized void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ToDoChange change) {
+        ToDoChangeEvent event = ToDoChangeEvent.of(++this.sequence, change);
+        this.replay[(int) (event.sequence() % this.replay.length)] = event;
+
+        for (MultiEmitter<? super ToDoChangeEvent> subscriber : this.subscribers) {
+            subscriber.emit(event);
+        }
+    }
+
+    /**
+     * Changes after the event {@code lastEventId}, followed by all future changes. If
+     * {@code lastEventId} is null only future changes are sent; if it is malformed, stems from
+     * another epoch or is no longer in the ring buffer, the stream starts with a reset.
+     */
+    public Multi<ToDoChangeEvent> subscribe(String lastEventId) {
+        return Multi.createFrom().<ToDoChangeEvent>emitter(emitter -> {
+                    emitter.onTermination(() -> this.subscribers.remove(emitter));
+
+                    // replay and registration under the publishing lock: no change is missed or sent twice
+                    synchronized (this) {
+                        if (lastEventId != null) {
+                            replay(lastEventId, emitter);
+                        }
+
+                        this.subscribers.add(emitter);
+                    }
+                }, BackPressureStrategy.ERROR)
+                // room for a full replay on top of the events a subscriber may fall behind
+                .onOverflow().buffer(this.replayCapacity + this.subscriberBuffer)
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .onFailure(BackPressureFailure.class).recoverWithCompletion()
+                .onTermination().invoke((failure, cancelled) -> {
+                    if (failure == null && !cancelled) {
+                        LOG.debug("Disconnected a change feed subscriber that fell behind");
+                    }
+                });
+    }
+
+    /**
+     * The id of the event as sent to the client: {@code <epoch>-<sequence>}.
+     */
+    public String eventId(ToDoChangeEvent event) {
+        return this.epoch + "-" + event.sequence();
+    }
+
+    public String getEpoch() {
+        return this.epoch;
+    }
+
+    public int getSubscribers() {
+        return this.subscribers.size();
+    }
+
+    private void replay(String lastEventId, MultiEmitter<? super ToDoChangeEvent> emitter) {
+        long lastSequence = sequenceOf(lastEventId);
+        long oldest = Math.max(1, this.sequence - this.replay.length + 1);
+
+        if (lastSequence < 0 || lastSequence > this.sequence || lastSequence < oldest - 1) {
+            emitter.emit(ToDoChangeEvent.reset(this.sequence));
+            return;
+        }
+
+        for (long sequence = lastSequence + 1; sequence <= this.sequence; sequence++) {
+            emitter.emit(this.replay[(int) (sequence % this.replay.length)]);
+        }
+    }
+
+    /**
+     * The sequence number of an event id of this epoch, -1 for any other id.
+     */
+    private long sequenceOf(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+
+        if (separator < 0 || !eventId.substring(0, separator).equals(this.epoch)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,883 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoIndexCheck;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoQuery;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.jpa.HibernateHints;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Opt-in columnar copy of all ToDos ({@code todo.columns.enabled}) for scans by priority and
+ * deadline. Every attribute is a primitive column in a direct buffer, descriptions are UTF-8
+ * bytes in one buffer addressed by offset and length, and ids are mapped to rows by an
+ * open-addressing table, also off-heap. So millions of ToDos are a handful of objects for the
+ * garbage collector, and a scan is a counted loop over one or two columns; only the matching
+ * rows become ToDos.
+ * <p>
+ * The columns are loaded at startup and afterwards kept up to date by the {@link ToDoChange}s of
+ * committed transactions. A removed ToDo leaves a free row; rows and description bytes are
+ * compacted once half of them are free. A rebuild loads into fresh buffers while the current
+ * ones keep serving scans, and swaps them in together with the changes committed meanwhile.
+ */
+@ApplicationScoped
+public class ToDoColumns {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SCAN_CHUNK_SIZE = 1 << 16;
+    private static final int NO_DEADLINE = Integer.MIN_VALUE;
+    private static final byte FREE = -1; // priority of a free row, outside of every priority mask
+    private static final int NO_DESCRIPTION = -1;
+    private static final long NO_VERSION = -1;
+
+    @ConfigProperty(name = "todo.columns.enabled", defaultValue = "false")
+    boolean enabled;
+    @Inject
+    EntityManager entityManager;
+
+    // scans share the read lock, changes take the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong skipped = new AtomicLong();
+    private List<ToDoChange> rebuildChanges; // changes committed while a rebuild loads, under the write lock
+    private RowTable rowsById = new RowTable();
+    private int capacity;
+    private int rows; // used rows, free ones included
+    private int live;
+    private LongBuffer ids;
+    private LongBuffer versions;
+    private LongBuffer revisions;
+    private IntBuffer deadlines; // epoch days
+    private ByteBuffer priorities;
+    private IntBuffer descriptionOffsets;
+    private IntBuffer descriptionLengths;
+    private ByteBuffer descriptions;
+    private int descriptionBytes;
+    private int freeDescriptionBytes;
+
+    public ToDoColumns() {
+        allocate(INITIAL_CAPACITY, INITIAL_CAPACITY * 32);
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        if (this.enabled) {
+            rebuild();
+        }
+    }
+
+    void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ToDoChange change) {
+        if (!this.enabled) {
+            return;
+        }
+
+        this.lock.writeLock().lock();
+
+        try {
+            if (this.rebuildChanges != null) {
+                this.rebuildChanges.add(change);
+            }
+
+            apply(change);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads all ToDos in chunks, like the export, so the persistence context stays small. The
+     * current rows stay readable until the loaded ones replace them.
+     */
+    @Transactional
+    public void rebuild() {
+        TypedQuery<ToDo> query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL, ToDo.class);
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, ToDoListRepository.EXPORT_CHUNK_SIZE);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        ToDoColumns loaded = new ToDoColumns();
+
+        this.lock.writeLock().lock();
+
+        try {
+            this.rebuildChanges = new ArrayList<>();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        try {
+            try (Stream<ToDo> toDos = query.getResultStream()) {
+                Iterator<ToDo> iterator = toDos.iterator();
+
+                for (int i = 1; iterator.hasNext(); i++) {
+                    loaded.put(iterator.next());
+
+                    if (i % ToDoListRepository.EXPORT_CHUNK_SIZE == 0) {
+                        this.entityManager.clear();
+                    }
+                }
+            }
+
+            this.lock.writeLock().lock();
+
+            try {
+                // the query may have missed them, applying them twice does no harm
+                this.rebuildChanges.forEach(loaded::apply);
+                adopt(loaded);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        } finally {
+            this.lock.writeLock().lock();
+
+            try {
+                this.rebuildChanges = null;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void apply(ToDoChange change) {
+        if (change.current() != null) {
+            put(change.current());
+        } else {
+            remove(change.previous().getId());
+        }
+    }
+
+    /**
+     * Adds the ToDo or overwrites the row of its id. The repository rejects invalid priorities,
+     * but a row written around it must not break the observer: such a ToDo is left out, like in
+     * {@link ToDoStatistics}, and counted in {@link #getSkipped()}.
+     */
+    public void put(ToDo toDo) {
+        if (!toDo.hasValidPriority()) {
+            remove(toDo.getId());
+            this.skipped.incrementAndGet();
+            return;
+        }
+
+        this.lock.writeLock().lock();
+
+        try {
+            int row = this.rowsById.get(toDo.getId());
+
+            if (row < 0) {
+                if (this.rows == this.capacity) {
+                    grow();
+                }
+
+                row = this.rows++;
+                this.live++;
+                this.ids.put(row, toDo.getId());
+                this.rowsById.put(toDo.getId(), row);
+            } else {
+                freeDescription(row);
+                this.descriptionLengths.put(row, NO_DESCRIPTION);
+            }
+
+            this.versions.put(row, toDo.getVersion() != null ? toDo.getVersion() : NO_VERSION);
+            this.revisions.put(row, toDo.getRevision());
+            this.deadlines.put(row, toDo.getDeadline() != null ? (int) toDo.getDeadline().toEpochDay() : NO_DEADLINE);
+            this.priorities.put(row, (byte) toDo.getPriority());
+            writeDescription(row, toDo.getDescription());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        this.lock.writeLock().lock();
+
+        try {
+            int row = this.rowsById.remove(id);
+
+            if (row < 0) {
+                return;
+            }
+
+            freeDescription(row);
+            this.descriptionLengths.put(row, NO_DESCRIPTION);
+            // a free row matches neither a priority nor a deadline range
+            this.priorities.put(row, FREE);
+            this.deadlines.put(row, NO_DEADLINE);
+            this.live--;
+
+            if (this.rows > INITIAL_CAPACITY && this.live < this.rows / 2) {
+                compact();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * ToDos left out so far for an invalid priority.
+     */
+    public long getSkipped() {
+        return this.skipped.get();
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+
+        try {
+            return this.live;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * ToDos of the priority in deadline order, read with a scan of the priority column.
+     */
+    public List<ToDo> getAllToDosHavingPriority(int priority) {
+        if (priority < ToDo.TODO_PRIORITY_MIN || priority > ToDo.TODO_PRIORITY_MAX) {
+            return List.of();
+        }
+
+        this.lock.readLock().lock();
+
+        try {
+            ByteBuffer priorities = this.priorities;
+            byte wanted = (byte) priority;
+            int[] matches = new int[64];
+            int found = 0;
+
+            for (int row = 0, rows = this.rows; row < rows; row++) {
+                if (priorities.get(row) == wanted) {
+                    if (found == matches.length) {
+                        matches = Arrays.copyOf(matches, found * 2);
+                    }
+
+                    matches[found++] = row;
+                }
+            }
+
+            List<ToDo> toDos = toDos(matches, found);
+            toDos.sort(ToDoPriorityIndex.DEADLINE_ORDER);
+
+            return toDos;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The first {@code limit} ToDos due in {@code [from, to)} in deadline order, read with a scan
+     * of the deadline column; a null {@code from} includes everything before {@code to}.
+     */
+    public List<ToDo> getToDosDue(LocalDate from, LocalDate to, int limit) {
+        // NO_DEADLINE is below every range
+        long fromDay = from != null ? Math.max(from.toEpochDay(), NO_DEADLINE + 1L) : NO_DEADLINE + 1L;
+        long toDay = Math.min(to.toEpochDay(), Integer.MAX_VALUE);
+
+        if (limit <= 0 || fromDay >= toDay) {
+            return List.of();
+        }
+
+        this.lock.readLock().lock();
+
+        try {
+            IntBuffer deadlines = this.deadlines;
+            int low = (int) fromDay;
+            int high = (int) toDay;
+            // deadline in the high, row in the low half: sorting the keys sorts by deadline
+            long[] matches = new long[64];
+            int found = 0;
+
+            for (int row = 0, rows = this.rows; row < rows; row++) {
+                int deadline = deadlines.get(row);
+
+                if (deadline >= low & deadline < high) {
+                    if (found == matches.length) {
+                        matches = Arrays.copyOf(matches, found * 2);
+                    }
+
+                    matches[found++] = (long) deadline << 32 | row;
+                }
+            }
+
+            Arrays.sort(matches, 0, found);
+
+            // rows due on the last included day are ordered by id below, so keep all of them
+            int end = Math.min(found, limit);
+
+            while (end > 0 && end < found && matches[end] >> 32 == matches[end - 1] >> 32) {
+                end++;
+            }
+
+            int[] due = new int[end];
+
+            for (int i = 0; i < end; i++) {
+                due[i] = (int) matches[i];
+            }
+
+            List<ToDo> toDos = toDos(due, end);
+            toDos.sort(ToDoPriorityIndex.DEADLINE_ORDER);
+
+            return toDos.size() > limit ? toDos.subList(0, limit) : toDos;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * At most {@code limit} ToDos which come first in the order of the query, in no
+     * particular order. The rows are split into ranges scanned in parallel by the pool; each scan
+     * keeps its best rows in a bounded heap, so only those become ToDos. Descriptions are only
+     * decoded for rows passing the priority and deadline filters.
+     */
+    public List<ToDo> query(ToDoQuery query, int limit, ForkJoinPool pool) {
+        int priorityMask = 0;
+
+        for (int priority = ToDo.TODO_PRIORITY_MIN; priority <= ToDo.TODO_PRIORITY_MAX; priority++) {
+            if (!query.hasPriorities() || query.priorities().contains(priority)) {
+                priorityMask |= 1 << priority;
+            }
+        }
+
+        long low = query.from() != null ? Math.max(query.from().toEpochDay(), NO_DEADLINE + 1L) : NO_DEADLINE + 1L;
+        long high = query.to() != null ? Math.min(query.to().toEpochDay(), Integer.MAX_VALUE) : Integer.MAX_VALUE;
+
+        if (low > high) {
+            return List.of();
+        }
+
+        this.lock.readLock().lock();
+
+        try {
+            Scan scan = new Scan(query, limit, priorityMask, (int) low, (int) high, 0, this.rows);
+            PriorityQueue<Integer> best = pool.invoke(scan);
+
+            return toDos(best.stream().mapToInt(Integer::intValue).toArray(), best.size());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compares every priority with the result of the equivalent database query.
+     */
+    @Transactional
+    public ToDoIndexCheck check() {
+        if (!this.enabled) {
+            return new ToDoIndexCheck(false, true, 0, 0);
+        }
+
+        boolean consistent = true;
+        long columnar = 0;
+        long stored = 0;
+
+        for (int priority = ToDo.TODO_PRIORITY_MIN; priority <= ToDo.TODO_PRIORITY_MAX; priority++) {
+            List<ToDo> columnarToDos = getAllToDosHavingPriority(priority);
+            TypedQuery<ToDo> query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL_HAVING_PRIORITY, ToDo.class);
+            query.setParameter("priority", priority);
+            List<ToDo> storedToDos = new ArrayList<>(query.getResultList());
+            storedToDos.sort(ToDoPriorityIndex.DEADLINE_ORDER);
+
+            columnar += columnarToDos.size();
+            stored += storedToDos.size();
+
+            if (columnarToDos.size() != storedToDos.size()) {
+                consistent = false;
+                continue;
+            }
+
+            for (int i = 0; i < columnarToDos.size(); i++) {
+                if (!ToDoPriorityIndex.sameState(columnarToDos.get(i), storedToDos.get(i))) {
+                    consistent = false;
+                    break;
+                }
+            }
+        }
+
+        return new ToDoIndexCheck(true, consistent, columnar, stored);
+    }
+
+    private List<ToDo> toDos(int[] rows, int count) {
+        List<ToDo> toDos = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            long version = this.versions.get(row);
+            int deadline = this.deadlines.get(row);
+
+            toDos.add(ToDo.restore(
+                    this.ids.get(row),
+                    version != NO_VERSION ? version : null,
+                    readDescription(row),
+                    deadline != NO_DEADLINE ? LocalDate.ofEpochDay(deadline) : null,
+                    this.priorities.get(row),
+                    this.revisions.get(row)
+            ));
+        }
+
+        return toDos;
+    }
+
+    /**
+     * Order of two rows like the query orders ToDos: by priority if requested, then by deadline
+     * (none first) and id.
+     */
+    private int compareRows(int a, int b, boolean byPriority) {
+        if (byPriority) {
+            int priorities = Byte.compare(this.priorities.get(a), this.priorities.get(b));
+
+            if (priorities != 0) {
+                return priorities;
+            }
+        }
+
+        int deadlines = Integer.compare(this.deadlines.get(a), this.deadlines.get(b));
+
+        return deadlines != 0 ? deadlines : Long.compare(this.ids.get(a), this.ids.get(b));
+    }
+
+    /**
+     * Scans a range of rows, splitting it while it is larger than {@link #SCAN_CHUNK_SIZE}.
+     * The result is a heap with the worst of the best rows on top. The description filters are
+     * folded to UTF-8 bytes once and compared with the stored bytes in place, see
+     * {@link #matchesDescription(int, ToDoQuery, byte[], byte[])}.
+     */
+    private final class Scan extends RecursiveTask<PriorityQueue<Integer>> {
+        private final ToDoQuery query;
+        private final int limit;
+        private final int priorityMask;
+        private final int low;
+        private final int high;
+        private final int start;
+        private final int end;
+        private final byte[] contains;
+        private final byte[] prefix;
+
+        Scan(ToDoQuery query, int limit, int priorityMask, int low, int high, int start, int end) {
+            this.query = query;
+            this.limit = limit;
+            this.priorityMask = priorityMask;
+            this.low = low;
+            this.high = high;
+            this.start = start;
+            this.end = end;
+            this.contains = foldedBytes(query.contains());
+            this.prefix = foldedBytes(query.prefix());
+        }
+
+        private Scan(Scan scan, int start, int end) {
+            this.query = scan.query;
+            this.limit = scan.limit;
+            this.priorityMask = scan.priorityMask;
+            this.low = scan.low;
+            this.high = scan.high;
+            this.start = start;
+            this.end = end;
+            this.contains = scan.contains;
+            this.prefix = scan.prefix;
+        }
+
+        @Override
+        protected PriorityQueue<Integer> compute() {
+            if (this.end - this.start > SCAN_CHUNK_SIZE) {
+                int middle = (this.start + this.end) >>> 1;
+                Scan left = new Scan(this, this.start, middle);
+                Scan right = new Scan(this, middle, this.end);
+                left.fork();
+
+                PriorityQueue<Integer> best = right.compute();
+
+                for (int row : left.join()) {
+                    offer(best, row);
+                }
+
+                return best;
+            }
+
+            PriorityQueue<Integer> best = new PriorityQueue<>((a, b) -> compareRows(b, a, this.query.sortsByPriority()));
+            boolean ranged = this.query.hasDeadlineRange();
+            boolean described = this.query.hasDescriptionFilter();
+
+            for (int row = this.start; row < this.end; row++) {
+                int deadline = ToDoColumns.this.deadlines.get(row);
+
+                if ((this.priorityMask >>> ToDoColumns.this.priorities.get(row) & 1) == 0
+                        || (ranged && (deadline < this.low || deadline > this.high))) {
+                    continue;
+                }
+
+                if (described && !matchesDescription(row, this.query, this.contains, this.prefix)) {
+                    continue;
+                }
+
+                offer(best, row);
+            }
+
+            return best;
+        }
+
+        private void offer(PriorityQueue<Integer> best, int row) {
+            if (best.size() < this.limit) {
+                best.add(row);
+            } else if (compareRows(row, best.peek(), this.query.sortsByPriority()) < 0) {
+                best.poll();
+                best.add(row);
+            }
+        }
+    }
+
+    /**
+     * Whether the description of the row contains {@code contains} and starts with
+     * {@code prefix}, both folded UTF-8 bytes or null. ASCII descriptions are folded byte by byte
+     * while they are compared; only the others are decoded and folded like
+     * {@link ToDo#foldDescription(String)}.
+     */
+    private boolean matchesDescription(int row, ToDoQuery query, byte[] contains, byte[] prefix) {
+        int length = this.descriptionLengths.get(row);
+
+        if (length == NO_DESCRIPTION) {
+            return false;
+        }
+
+        ByteBuffer descriptions = this.descriptions;
+        int offset = this.descriptionOffsets.get(row);
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (descriptions.get(i) < 0) {
+                return query.matchesDescription(readDescription(row));
+            }
+        }
+
+        return (prefix == null || regionMatches(descriptions, offset, length, prefix))
+                && (contains == null || indexOf(descriptions, offset, length, contains) >= 0);
+    }
+
+    private static int indexOf(ByteBuffer descriptions, int offset, int length, byte[] folded) {
+        for (int i = 0, last = length - folded.length; i <= last; i++) {
+            if (regionMatches(descriptions, offset + i, length - i, folded)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean regionMatches(ByteBuffer descriptions, int offset, int length, byte[] folded) {
+        if (folded.length > length) {
+            return false;
+        }
+
+        for (int i = 0; i < folded.length; i++) {
+            byte b = descriptions.get(offset + i);
+
+            if ((b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b) != folded[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static byte[] foldedBytes(String text) {
+        return text != null ? ToDo.foldDescription(text).getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private String readDescription(int row) {
+        int length = this.descriptionLengths.get(row);
+
+        if (length == NO_DESCRIPTION) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        this.descriptions.get(this.descriptionOffsets.get(row), bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeDescription(int row, String description) {
+        if (description == null) {
+            this.descriptionLengths.put(row, NO_DESCRIPTION);
+            return;
+        }
+
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+
+        if (this.descriptionBytes + bytes.length > this.descriptions.capacity()) {
+            if (this.freeDescriptionBytes > this.descriptionBytes / 2) {
+                compactDescriptions();
+            }
+
+            if (this.descriptionBytes + bytes.length > this.descriptions.capacity()) {
+                this.descriptions = copy(this.descriptions, this.descriptionBytes,
+                        Math.max(this.descriptions.capacity() * 2, this.descriptionBytes + bytes.length));
+            }
+        }
+
+        this.descriptions.put(this.descriptionBytes, bytes);
+        this.descriptionOffsets.put(row, this.descriptionBytes);
+        this.descriptionLengths.put(row, bytes.length);
+        this.descriptionBytes += bytes.length;
+    }
+
+    private void freeDescription(int row) {
+        int length = this.descriptionLengths.get(row);
+
+        if (length != NO_DESCRIPTION) {
+            this.freeDescriptionBytes += length;
+        }
+    }
+
+    /**
+     * Takes over the rows of the other columns, which must not be used afterwards.
+     */
+    private void adopt(ToDoColumns other) {
+        this.capacity = other.capacity;
+        this.rows = other.rows;
+        this.live = other.live;
+        this.ids = other.ids;
+        this.versions = other.versions;
+        this.revisions = other.revisions;
+        this.deadlines = other.deadlines;
+        this.priorities = other.priorities;
+        this.descriptionOffsets = other.descriptionOffsets;
+        this.descriptionLengths = other.descriptionLengths;
+        this.descriptions = other.descriptions;
+        this.descriptionBytes = other.descriptionBytes;
+        this.freeDescriptionBytes = other.freeDescriptionBytes;
+        this.rowsById = other.rowsById;
+        this.skipped.addAndGet(other.skipped.get());
+    }
+
+    private void allocate(int capacity, int descriptionCapacity) {
+        this.capacity = capacity;
+        this.rows = 0;
+        this.live = 0;
+        this.ids = allocateDirect(capacity * (long) Long.BYTES).asLongBuffer();
+        this.versions = allocateDirect(capacity * (long) Long.BYTES).asLongBuffer();
+        this.revisions = allocateDirect(capacity * (long) Long.BYTES).asLongBuffer();
+        this.deadlines = allocateDirect(capacity * (long) Integer.BYTES).asIntBuffer();
+        this.priorities = allocateDirect(capacity);
+        this.descriptionOffsets = allocateDirect(capacity * (long) Integer.BYTES).asIntBuffer();
+        this.descriptionLengths = allocateDirect(capacity * (long) Integer.BYTES).asIntBuffer();
+        this.descriptions = allocateDirect(descriptionCapacity);
+        this.descriptionBytes = 0;
+        this.freeDescriptionBytes = 0;
+        this.rowsById.clear(capacity);
+    }
+
+    private void grow() {
+        int capacity = this.capacity * 2;
+
+        if (capacity < 0) {
+            throw new IllegalStateException("Too many ToDos for the columns!");
+        }
+
+        LongBuffer ids = allocateDirect(capacity * (long) Long.BYTES).asLongBuffer();
+        LongBuffer versions = allocateDirect(capacity * (long) Long.BYTES).asLongBuffer();
+        LongBuffer revisions = allocateDirect(capacity * (long) Long.BYTES).asLongBuffer();
+        IntBuffer deadlines = allocateDirect(capacity * (long) Integer.BYTES).asIntBuffer();
+        IntBuffer descriptionOffsets = allocateDirect(capacity * (long) Integer.BYTES).asIntBuffer();
+        IntBuffer descriptionLengths = allocateDirect(capacity * (long) Integer.BYTES).asIntBuffer();
+
+        ids.put(0, this.ids, 0, this.rows);
+        versions.put(0, this.versions, 0, this.rows);
+        revisions.put(0, this.revisions, 0, this.rows);
+        deadlines.put(0, this.deadlines, 0, this.rows);
+        descriptionOffsets.put(0, this.descriptionOffsets, 0, this.rows);
+        descriptionLengths.put(0, this.descriptionLengths, 0, this.rows);
+
+        this.ids = ids;
+        this.versions = versions;
+        this.revisions = revisions;
+        this.deadlines = deadlines;
+        this.priorities = copy(this.priorities, this.rows, capacity);
+        this.descriptionOffsets = descriptionOffsets;
+        this.descriptionLengths = descriptionLengths;
+        this.capacity = capacity;
+        this.rowsById.resize(capacity, this.ids, this.priorities, this.rows);
+    }
+
+    /**
+     * Moves the live rows to the front, keeping their order, and then compacts the descriptions.
+     */
+    private void compact() {
+        int to = 0;
+
+        for (int from = 0; from < this.rows; from++) {
+            if (this.priorities.get(from) == FREE) {
+                continue;
+            }
+
+            if (to != from) {
+                this.ids.put(to, this.ids.get(from));
+                this.versions.put(to, this.versions.get(from));
+                this.revisions.put(to, this.revisions.get(from));
+                this.deadlines.put(to, this.deadlines.get(from));
+                this.priorities.put(to, this.priorities.get(from));
+                this.descriptionOffsets.put(to, this.descriptionOffsets.get(from));
+                this.descriptionLengths.put(to, this.descriptionLengths.get(from));
+            }
+
+            to++;
+        }
+
+        for (int row = to; row < this.rows; row++) {
+            this.priorities.put(row, FREE);
+            this.deadlines.put(row, NO_DEADLINE);
+        }
+
+        this.rows = to;
+        this.rowsById.resize(this.capacity, this.ids, this.priorities, this.rows);
+        compactDescriptions();
+    }
+
+    private void compactDescriptions() {
+        ByteBuffer descriptions = allocateDirect(this.descriptions.capacity());
+        int bytes = 0;
+
+        for (int row = 0; row < this.rows; row++) {
+            int length = this.descriptionLengths.get(row);
+
+            if (this.priorities.get(row) == FREE || length == NO_DESCRIPTION) {
+                continue;
+            }
+
+            descriptions.put(bytes, this.descriptions, this.descriptionOffsets.get(row), length);
+            this.descriptionOffsets.put(row, bytes);
+            bytes += length;
+        }
+
+        this.descriptions = descriptions;
+        this.descriptionBytes = bytes;
+        this.freeDescriptionBytes = 0;
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer, int length, int capacity) {
+        ByteBuffer copy = allocateDirect(capacity);
+        copy.put(0, buffer, 0, length);
+
+        return copy;
+    }
+
+    private static ByteBuffer allocateDirect(long capacity) {
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many ToDos for the columns!");
+        }
+
+        return ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Id to row map with linear probing, kept at most half full. Removed ids leave a
+     * {@code DELETED} entry until the next resize.
+     */
+    private static final class RowTable {
+        private static final int EMPTY = 0;
+        private static final int DELETED = -1;
+
+        private LongBuffer keys;
+        private IntBuffer values; // row + 1, so the zeroed buffer is empty
+        private int mask;
+        private int used;
+
+        void clear(int rows) {
+            int size = Integer.highestOneBit(Math.max(rows, 1) * 2 - 1) * 2;
+
+            this.keys = allocateDirect(size * (long) Long.BYTES).asLongBuffer();
+            this.values = allocateDirect(size * (long) Integer.BYTES).asIntBuffer();
+            this.mask = size - 1;
+            this.used = 0;
+        }
+
+        void resize(int rows, LongBuffer ids, ByteBuffer priorities, int used) {
+            clear(rows);
+
+            for (int row = 0; row < used; row++) {
+                if (priorities.get(row) != FREE) {
+                    put(ids.get(row), row);
+                }
+            }
+        }
+
+        int get(long id) {
+            for (int slot = slot(id); ; slot = (slot + 1) & this.mask) {
+                int value = this.values.get(slot);
+
+                if (value == EMPTY) {
+                    return -1;
+                }
+
+                if (this.keys.get(slot) == id) {
+                    return value == DELETED ? -1 : value - 1;
+                }
+            }
+        }
+
+        void put(long id, int row) {
+            if (this.used >= (this.mask + 1) / 2) {
+                throw new IllegalStateException("Row table is full");
+            }
+
+            for (int slot = slot(id); ; slot = (slot + 1) & this.mask) {
+                int value = this.values.get(slot);
+
+                if (value == EMPTY || this.keys.get(slot) == id) {
+                    if (value == EMPTY) {
+                        this.used++;
+                    }
+
+                    this.keys.put(slot, id);
+                    this.values.put(slot, row + 1);
+                    return;
+                }
+            }
+        }
+
+        int remove(long id) {
+            for (int slot = slot(id); ; slot = (slot + 1) & this.mask) {
+                int value = this.values.get(slot);
+
+                if (value == EMPTY) {
+                    return -1;
+                }
+
+                if (this.keys.get(slot) == id) {
+                    this.values.put(slot, DELETED);
+                    return value == DELETED ? -1 : value - 1;
+                }
+            }
+        }
+
+        private int slot(long id) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+
+            return (int) (hash ^ (hash >>> 32)) & this.mask;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoDueCounts;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Number of ToDos per deadline day, built with one GROUP BY at startup and afterwards kept up
+ * to date by {@link ToDoStatistics} with the {@link ToDoChange}s of committed transactions,
+ * under the same lock it reconciles the counters with. Counting a range adds up one entry per day that has a deadline,
+ * so "due today" and "due this week" never touch the table.
+ */
+@ApplicationScoped
+public class ToDoDeadlineBuckets {
+    @Inject
+    EntityManager entityManager;
+
+    private final ConcurrentSkipListMap<LocalDate, Long> buckets = new ConcurrentSkipListMap<>();
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        rebuild();
+    }
+
+    void apply(ToDoChange change) {
+        LocalDate before = change.previous() != null ? change.previous().getDeadline() : null;
+        LocalDate after = change.current() != null ? change.current().getDeadline() : null;
+
+        if (Objects.equals(before, after)) {
+            return;
+        }
+
+        add(before, -1);
+        add(after, 1);
+    }
+
+    @Transactional
+    public void rebuild() {
+        replace(load());
+    }
+
+    /**
+     * Counts per deadline day as stored in the database.
+     */
+    Map<LocalDate, Long> load() {
+        Map<LocalDate, Long> counts = new HashMap<>();
+
+        for (Object[] row : this.entityManager.createNamedQuery(ToDo.QUERY_COUNT_BY_DEADLINE, Object[].class).getResultList()) {
+            counts.put((LocalDate) row[0], (Long) row[1]);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Replaces the counts entry by entry, so readers never see an empty map in between.
+     */
+    synchronized void replace(Map<LocalDate, Long> counts) {
+        this.buckets.keySet().removeIf(day -> !counts.containsKey(day));
+        this.buckets.putAll(counts);
+    }
+
+    Map<LocalDate, Long> snapshot() {
+        return new HashMap<>(this.buckets);
+    }
+
+    /**
+     * ToDos due in {@code [from, to)}; a null bound is open.
+     */
+    public long count(LocalDate from, LocalDate to) {
+        Map<LocalDate, Long> range = from == null ? this.buckets.headMap(to) : to == null ? this.buckets.tailMap(from) : this.buckets.subMap(from, to);
+
+        return range.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public ToDoDueCounts counts(LocalDate today) {
+        return new ToDoDueCounts(
+                today,
+                count(null, today),
+                count(today, today.plusDays(1)),
+                count(today, today.plusWeeks(1))
+        );
+    }
+
+    private void add(LocalDate deadline, long delta) {
+        if (deadline != null) {
+            this.buckets.compute(deadline, (day, count) -> {
+                long updated = (count != null ? count : 0) + delta;
+                return updated != 0 ? updated : null;
+            });
+        }
+    }
+}
@@ -1,24 +1,91 @@
 package at.htlleonding.jonasfroeller.quarkus.repository;
 
+import at.htlleonding.jonasfroeller.quarkus.model.TimeOrderedIds;
 import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoBatchResult;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoCacheStatistics;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoCursor;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoDelta;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoPage;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoQuery;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoQueryPlan;
+import io.micrometer.core.annotation.Timed;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
 import jakarta.transaction.Transactional;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class ToDoListRepository {
+    public static final int EXPORT_CHUNK_SIZE = 500;
+
     @Inject
     EntityManager entityManager;
+    @Inject
+    ToDoPriorityIndex priorityIndex;
+    @Inject
+    ToDoColumns columns;
+    @Inject
+    ToDoQueryEngine queryEngine;
+    @Inject
+    ToDoVersions toDoVersions;
+    @Inject
+    ToDoRevisions revisions;
+    @Inject
+    ToDoWriteBehind writeBehind;
+    @Inject
+    ToDoMetrics metrics;
+    @Inject
+    Event<ToDoChange> toDoChanges;
+    @ConfigProperty(name = "todo.batch.flush-size", defaultValue = "50")
+    int batchFlushSize;
 
+    /**
+     * In write-behind mode the ToDo gets a time-ordered id right away and is inserted by
+     * {@link ToDoWriteBehind}; otherwise it is persisted within this transaction.
+     */
     @Transactional
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
     public ToDo addToDo(ToDo toDo) {
+        requirePriority(ToDoChange.Kind.CREATED, toDo);
+
+        if (toDo != null && this.writeBehind.isEnabled()) {
+            toDo.assignId(TimeOrderedIds.next());
+            this.writeBehind.enqueue(ToDoChange.Kind.CREATED, toDo.getId(), toDo);
+            return toDo;
+        }
+
         if (toDo != null) {
+            toDo.markChanged(this.revisions.forTransaction());
             this.entityManager.persist(toDo);
+            this.toDoChanges.fire(ToDoChange.created(toDo));
             return toDo;
         }
 
@@ -26,13 +93,33 @@ public class ToDoListRepository {
     }
 
     @Transactional
-    public void updateToDo(int id, ToDo toDo) {
+    public ToDo updateToDo(long id, ToDo toDo) {
+        return updateToDo(id, toDo, null);
+    }
+
+    /**
+     * @param expectedVersions versions the client accepts (from {@code If-Match}), null for no check
+     */
+    @Transactional
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public ToDo updateToDo(long id, ToDo toDo, Set<Long> expectedVersions) {
+        requirePriority(ToDoChange.Kind.UPDATED, toDo);
+
+        if (toDo != null && id >= 0 && this.writeBehind.isEnabled()) {
+            return enqueueChange(ToDoChange.Kind.UPDATED, id, toDo, expectedVersions);
+        }
+
         if (toDo != null && id >= 0) {
-            ToDo foundToDo = this.entityManager.find(ToDo.class, id);
+            ToDo foundToDo = findActive(id);
 
             if (foundToDo != null) {
-                ToDo existing = entityManager.merge(foundToDo);
-                existing.update(toDo);
+                requireVersion(foundToDo, expectedVersions);
+                ToDo previous = new ToDo(foundToDo);
+                foundToDo.update(toDo); // managed, no merge needed
+                foundToDo.markChanged(this.revisions.forTransaction());
+                this.entityManager.flush(); // increments the version before the change is published
+                this.toDoChanges.fire(ToDoChange.updated(previous, foundToDo));
+                return foundToDo;
             } else {
                 throw new NotFoundException();
             }
@@ -42,13 +129,37 @@ public class ToDoListRepository {
     }
 
     @Transactional
-    public void replaceToDo(int id, ToDo toDo) {
+    public ToDo replaceToDo(long id, ToDo toDo) {
+        return replaceToDo(id, toDo, null);
+    }
+
+    /**
+     * Replaces the ToDo in place: the row keeps its id and is written with a single UPDATE.
+     * The lookup is usually answered by the second-level cache. A bulk JPQL update would skip
+     * it, but Hibernate then invalidates the whole ToDo cache region.
+     *
+     * @param expectedVersions versions the client accepts (from {@code If-Match}), null for no check
+     */
+    @Transactional
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public ToDo replaceToDo(long id, ToDo toDo, Set<Long> expectedVersions) {
+        requirePriority(ToDoChange.Kind.REPLACED, toDo);
+
+        if (toDo != null && id >= 0 && this.writeBehind.isEnabled()) {
+            return enqueueChange(ToDoChange.Kind.REPLACED, id, toDo, expectedVersions);
+        }
+
         if (toDo != null && id >= 0) {
-            ToDo foundToDo = this.entityManager.find(ToDo.class, id);
+            ToDo foundToDo = findActive(id);
 
             if (foundToDo != null) {
-                this.entityManager.remove(foundToDo);
-                this.entityManager.persist(toDo);
+                requireVersion(foundToDo, expectedVersions);
+                ToDo previous = new ToDo(foundToDo);
+                foundToDo.update(toDo);
+                foundToDo.markChanged(this.revisions.forTransaction());
+                this.entityManager.flush();
+                this.toDoChanges.fire(ToDoChange.replaced(previous, foundToDo));
+                return foundToDo;
             } else {
                 throw new NotFoundException();
             }
@@ -57,36 +168,494 @@ public class ToDoListRepository {
         }
     }
 
+    /**
+     * Leaves a tombstone, so delta syncs learn about the removal; see {@link ToDoRevisions}.
+     */
     @Transactional
-    public void removeToDo(int id) {
-        ToDo toDo = this.entityManager.find(ToDo.class, id);
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public void removeToDo(long id) {
+        if (this.writeBehind.isEnabled()) {
+            enqueueChange(ToDoChange.Kind.REMOVED, id, null, null);
+            return;
+        }
+
+        ToDo toDo = findActive(id);
 
         if (toDo != null) {
-            this.entityManager.remove(toDo);
+            toDo.markRemoved(this.revisions.forTransaction());
+            this.toDoChanges.fire(ToDoChange.removed(toDo));
         } else {
             throw new NotFoundException();
         }
     }
 
-    public ToDo getToDo(int id) {
+    /**
+     * Queues a change in write-behind mode. A queued ToDo has no version until it is committed,
+     * so a conditional change of it always fails.
+     */
+    private ToDo enqueueChange(ToDoChange.Kind kind, long id, ToDo toDo, Set<Long> expectedVersions) {
+        ToDo current = findCurrent(id);
+
+        if (current == null) {
+            throw new NotFoundException();
+        }
+
+        requireVersion(current, expectedVersions);
+
+        if (toDo == null) {
+            this.writeBehind.enqueue(kind, id, null);
+            return null;
+        }
+
+        ToDo next = new ToDo();
+        next.assignId(id);
+        next.update(toDo);
+        this.writeBehind.enqueue(kind, id, next);
+
+        return next;
+    }
+
+    /**
+     * Pending state of the ToDo if a write is queued, the committed state otherwise.
+     */
+    private ToDo findCurrent(long id) {
+        ToDoWriteBehind.PendingWrite pending = this.writeBehind.getPending(id);
+
+        if (pending != null) {
+            return pending.state();
+        }
+
+        return findActive(id);
+    }
+
+    /**
+     * The ToDo unless it does not exist or is a tombstone.
+     */
+    private ToDo findActive(long id) {
+        ToDo toDo = this.entityManager.find(ToDo.class, id);
+
+        return toDo != null && !toDo.hasBeenRemoved() ? toDo : null;
+    }
+
+    /**
+     * Latest version of the ToDo this instance has seen, or null if it is unknown.
+     * Lets callers answer conditional requests without loading the ToDo.
+     */
+    public Long getKnownVersion(long id) {
+        if (this.writeBehind.getPending(id) != null) {
+            return null;
+        }
+
+        return this.toDoVersions.get(id);
+    }
+
+    /**
+     * Revision of a list bucket of {@link ToDoVersions}: a change of a priority 2 ToDo changes
+     * the revisions of all ToDos and of priority 2 only. In write-behind mode every queued write
+     * changes every revision.
+     */
+    public String getListRevision(int bucket) {
+        if (this.writeBehind.isEnabled()) {
+            return this.toDoVersions.getListRevision(bucket) + "." + this.writeBehind.getEnqueued();
+        }
+
+        return this.toDoVersions.getListRevision(bucket);
+    }
+
+    /**
+     * Rejects a ToDo without a valid priority, e.g. one posted without a priority. Every read
+     * model indexes ToDos by their priority.
+     */
+    private void requirePriority(ToDoChange.Kind kind, ToDo toDo) {
+        if (toDo != null && !toDo.hasValidPriority()) {
+            this.metrics.invalidPriorityRejected(kind);
+            throw new BadRequestException("Priority must be between 1 and 3!");
+        }
+    }
+
+    private static void requireVersion(ToDo toDo, Set<Long> expectedVersions) {
+        if (expectedVersions != null && !expectedVersions.contains(toDo.getVersion())) {
+            throw new ClientErrorException(Response.Status.PRECONDITION_FAILED);
+        }
+    }
+
+    /**
+     * Persists all ToDos in one transaction. Inserts are sent as JDBC batches and the
+     * persistence context is flushed and cleared every {@code todo.batch.flush-size} rows.
+     * In write-behind mode every item is queued like a single write instead.
+     */
+    @Transactional
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public List<ToDoBatchResult> addToDos(List<ToDo> toDos) {
+        List<ToDoBatchResult> results = new ArrayList<>(toDos.size());
+
+        for (int i = 0; i < toDos.size(); i++) {
+            ToDo toDo = toDos.get(i);
+
+            if (toDo == null) {
+                results.add(ToDoBatchResult.failed(i, null, Response.Status.BAD_REQUEST.getStatusCode(), "Invalid ToDo input!"));
+            } else if (!toDo.hasValidPriority()) {
+                this.metrics.invalidPriorityRejected(ToDoChange.Kind.CREATED);
+                results.add(ToDoBatchResult.failed(i, null, Response.Status.BAD_REQUEST.getStatusCode(), "Priority must be between 1 and 3!"));
+            } else if (this.writeBehind.isEnabled()) {
+                toDo.assignId(TimeOrderedIds.next());
+                results.add(enqueueBatchItem(i, toDo.getId(), Response.Status.CREATED,
+                        () -> this.writeBehind.enqueue(ToDoChange.Kind.CREATED, toDo.getId(), toDo)));
+            } else {
+                toDo.markChanged(this.revisions.forTransaction());
+                this.entityManager.persist(toDo);
+                this.toDoChanges.fire(ToDoChange.created(toDo));
+                results.add(ToDoBatchResult.succeeded(i, toDo.getId(), Response.Status.CREATED.getStatusCode()));
+            }
+
+            if ((i + 1) % this.batchFlushSize == 0) {
+                this.entityManager.flush();
+                this.entityManager.clear();
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Updates every valid ToDo whose id exists in one transaction; an invalid item is reported
+     * and skipped, it does not roll back the batch. Each chunk of
+     * {@code todo.batch.flush-size} ToDos is loaded with a single multi-id load,
+     * then flushed as one JDBC batch and cleared.
+     */
+    @Transactional
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public List<ToDoBatchResult> updateToDos(List<ToDo> toDos) {
+        List<ToDoBatchResult> results = new ArrayList<>(toDos.size());
+
+        for (int start = 0; start < toDos.size(); start += this.batchFlushSize) {
+            List<ToDo> chunk = toDos.subList(start, Math.min(start + this.batchFlushSize, toDos.size()));
+            Map<Long, ToDo> found = this.writeBehind.isEnabled() ? Map.of() : findAll(chunk.stream()
+                    .filter(Objects::nonNull)
+                    .map(ToDo::getId)
+                    .toList());
+            List<ToDo> updated = new ArrayList<>();
+
+            for (int i = 0; i < chunk.size(); i++) {
+                ToDo toDo = chunk.get(i);
+                int index = start + i;
+
+                if (toDo == null || toDo.getId() == null) {
+                    results.add(ToDoBatchResult.failed(index, null, Response.Status.BAD_REQUEST.getStatusCode(), "Invalid ToDo input!"));
+                } else if (!toDo.hasValidPriority()) {
+                    this.metrics.invalidPriorityRejected(ToDoChange.Kind.UPDATED);
+                    results.add(ToDoBatchResult.failed(index, toDo.getId(), Response.Status.BAD_REQUEST.getStatusCode(), "Priority must be between 1 and 3!"));
+                } else if (this.writeBehind.isEnabled()) {
+                    results.add(enqueueBatchItem(index, toDo.getId(), Response.Status.NO_CONTENT,
+                            () -> enqueueChange(ToDoChange.Kind.UPDATED, toDo.getId(), toDo, null)));
+                } else if (!found.containsKey(toDo.getId())) {
+                    results.add(ToDoBatchResult.failed(index, toDo.getId(), Response.Status.NOT_FOUND.getStatusCode(), "ToDo not found!"));
+                } else {
+                    ToDo existing = found.get(toDo.getId());
+                    updated.add(new ToDo(existing));
+                    existing.update(toDo);
+                    existing.markChanged(this.revisions.forTransaction());
+                    results.add(ToDoBatchResult.succeeded(index, toDo.getId(), Response.Status.NO_CONTENT.getStatusCode()));
+                }
+            }
+
+            this.entityManager.flush();
+
+            for (ToDo previous : updated) {
+                this.toDoChanges.fire(ToDoChange.updated(previous, found.get(previous.getId())));
+            }
+
+            this.entityManager.clear();
+        }
+
+        return results;
+    }
+
+    /**
+     * Removes every ToDo whose id exists in one transaction, chunked like {@link #updateToDos(List)}.
+     * In write-behind mode both queue every item like a single write instead.
+     */
+    @Transactional
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public List<ToDoBatchResult> removeToDos(List<Long> ids) {
+        List<ToDoBatchResult> results = new ArrayList<>(ids.size());
+
+        for (int start = 0; start < ids.size(); start += this.batchFlushSize) {
+            List<Long> chunk = ids.subList(start, Math.min(start + this.batchFlushSize, ids.size()));
+            Map<Long, ToDo> found = this.writeBehind.isEnabled() ? new HashMap<>() : findAll(chunk);
+
+            for (int i = 0; i < chunk.size(); i++) {
+                Long id = chunk.get(i);
+                int index = start + i;
+                ToDo toDo = id != null ? found.remove(id) : null;
+
+                if (id != null && this.writeBehind.isEnabled()) {
+                    results.add(enqueueBatchItem(index, id, Response.Status.NO_CONTENT,
+                            () -> enqueueChange(ToDoChange.Kind.REMOVED, id, null, null)));
+                } else if (toDo != null) {
+                    toDo.markRemoved(this.revisions.forTransaction());
+                    this.toDoChanges.fire(ToDoChange.removed(toDo));
+                    results.add(ToDoBatchResult.succeeded(index, id, Response.Status.NO_CONTENT.getStatusCode()));
+                } else {
+                    results.add(ToDoBatchResult.failed(index, id, Response.Status.NOT_FOUND.getStatusCode(), "ToDo not found!"));
+                }
+            }
+
+            this.entityManager.flush();
+            this.entityManager.clear();
+        }
+
+        return results;
+    }
+
+    /**
+     * Queues one item of a batch in write-behind mode. Items are queued one by one, so a full
+     * queue fails the item with 503 while the items queued before it stay accepted.
+     */
+    private static ToDoBatchResult enqueueBatchItem(int index, Long id, Response.Status status, Runnable enqueue) {
         try {
-            TypedQuery<ToDo> query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_USING_ID, ToDo.class);
-            query.setParameter("id", id);
+            enqueue.run();
+            return ToDoBatchResult.succeeded(index, id, status.getStatusCode());
+        } catch (NotFoundException e) {
+            return ToDoBatchResult.failed(index, id, Response.Status.NOT_FOUND.getStatusCode(), "ToDo not found!");
+        } catch (ServiceUnavailableException e) {
+            return ToDoBatchResult.failed(index, id, Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), "Write queue is full!");
+        }
+    }
+
+    private Map<Long, ToDo> findAll(List<Long> ids) {
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        Map<Long, ToDo> found = new HashMap<>();
+
+        if (distinctIds.isEmpty()) {
+            return found;
+        }
+
+        for (ToDo toDo : this.entityManager.unwrap(Session.class).byMultipleIds(ToDo.class).multiLoad(distinctIds)) {
+            if (toDo != null && !toDo.hasBeenRemoved()) {
+                found.put(toDo.getId(), toDo);
+            }
+        }
 
-            return query.getSingleResult();
-        } catch (Exception e) {
+        return found;
+    }
+
+    /**
+     * Looks the ToDo up by primary key, so the lookup is answered from the second-level
+     * cache whenever the entity is cached. Hibernate keeps the cache entry in sync with
+     * every update and removal of the entity.
+     */
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public ToDo getToDo(long id) {
+        ToDo toDo = findCurrent(id);
+
+        if (toDo == null) {
             throw new NotFoundException();
         }
+
+        this.toDoVersions.remember(toDo);
+        return toDo;
     }
 
+    /**
+     * The local cache behind the region does not record evictions, so they are derived:
+     * every put either still sits in the region, overwrote the entry of an updated ToDo,
+     * was dropped with a deleted ToDo or was evicted by the size or idle bound.
+     */
+    public ToDoCacheStatistics getCacheStatistics() {
+        Statistics hibernateStatistics = this.entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        CacheRegionStatistics statistics = hibernateStatistics.getDomainDataRegionStatistics(ToDo.class.getName());
+
+        if (statistics == null) {
+            return new ToDoCacheStatistics(0, 0, 0, 0, 0);
+        }
+
+        EntityStatistics entityStatistics = hibernateStatistics.getEntityStatistics(ToDo.class.getName());
+        long size = statistics.getElementCountInMemory();
+        long evictions = statistics.getPutCount() - size
+                - entityStatistics.getUpdateCount()
+                - entityStatistics.getDeleteCount();
+
+        return new ToDoCacheStatistics(
+                statistics.getHitCount(),
+                statistics.getMissCount(),
+                statistics.getPutCount(),
+                size,
+                Math.max(0, evictions)
+        );
+    }
+
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
     public List<ToDo> getAllToDos() {
-        return this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL, ToDo.class).getResultList();
+        List<ToDo> toDos = this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL, ToDo.class).getResultList();
+
+        return this.writeBehind.overlay(toDos, toDo -> true);
     }
 
+    /**
+     * Changes committed after revision {@code since}, read with a range scan of the revision
+     * index. Queued write-behind changes are included once they are committed.
+     */
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public ToDoDelta getChangesSince(long since) {
+        long until = this.revisions.getWatermark();
+
+        if (since < this.revisions.getHorizon() || since > until) {
+            return ToDoDelta.full(until, this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL, ToDo.class).getResultList());
+        }
+
+        TypedQuery<ToDo> query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_CHANGED_BETWEEN, ToDo.class);
+        query.setParameter("since", since);
+        query.setParameter("until", until);
+
+        List<ToDo> changed = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+
+        for (ToDo toDo : query.getResultList()) {
+            if (toDo.hasBeenRemoved()) {
+                removed.add(toDo.getId());
+            } else {
+                changed.add(toDo);
+            }
+        }
+
+        return new ToDoDelta(until, false, changed, removed);
+    }
+
+    /**
+     * Hands every ToDo to the consumer in deadline order without materializing the whole list.
+     * Rows are read in chunks of {@link #EXPORT_CHUNK_SIZE} and the persistence context is cleared
+     * after each chunk, so memory stays constant regardless of the table size.
+     */
+    @Transactional
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public void exportToDos(Consumer<ToDo> consumer) {
+        TypedQuery<ToDo> query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL, ToDo.class);
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, EXPORT_CHUNK_SIZE);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+
+        try (Stream<ToDo> toDos = query.getResultStream()) {
+            Iterator<ToDo> iterator = toDos.iterator();
+
+            for (int i = 1; iterator.hasNext(); i++) {
+                consumer.accept(iterator.next());
+
+                if (i % EXPORT_CHUNK_SIZE == 0) {
+                    this.entityManager.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether {@link #getAllToDosHavingPriority(int)} is answered from memory, without a statement.
+     */
+    public boolean readsPrioritiesFromMemory() {
+        return this.columns.isEnabled() || this.priorityIndex.isEnabled();
+    }
+
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
     public List<ToDo> getAllToDosHavingPriority(int priority) {
-        TypedQuery<ToDo> query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL_HAVING_PRIORITY, ToDo.class);
-        query.setParameter("priority", priority);
+        return this.metrics.priorityLookups(priority).record(() -> {
+            List<ToDo> toDos;
+
+            if (this.columns.isEnabled()) {
+                toDos = this.columns.getAllToDosHavingPriority(priority);
+            } else if (this.priorityIndex.isEnabled()) {
+                toDos = this.priorityIndex.getAllToDosHavingPriority(priority);
+            } else {
+                TypedQuery<ToDo> query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL_HAVING_PRIORITY, ToDo.class);
+                query.setParameter("priority", priority);
+                toDos = query.getResultList();
+            }
+
+            return this.writeBehind.overlay(toDos, toDo -> toDo.getPriority() == priority);
+        });
+    }
+
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public ToDoPage getToDoPage(ToDoCursor after, int limit) {
+        TypedQuery<ToDo> query;
+
+        if (after == null) {
+            query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_PAGE_FIRST, ToDo.class);
+        } else if (after.deadline() == null) {
+            query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_PAGE_AFTER_WITHOUT_DEADLINE, ToDo.class);
+            query.setParameter("id", after.id());
+        } else {
+            query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_PAGE_AFTER, ToDo.class);
+            query.setParameter("deadline", after.deadline());
+            query.setParameter("id", after.id());
+        }
+
+        // one extra row tells us whether there is a next page without a count query
+        query.setMaxResults(limit + 1);
+        List<ToDo> toDos = query.getResultList();
+
+        if (toDos.size() > limit) {
+            List<ToDo> items = toDos.subList(0, limit);
+            return new ToDoPage(items, ToDoCursor.of(items.get(limit - 1)).encode());
+        }
+
+        return new ToDoPage(toDos, null);
+    }
+
+    /**
+     * ToDos due in {@code [from, to)} in deadline order, read with a scan of the {@link ToDoColumns}
+     * if they are enabled and with a range scan of the deadline index otherwise; a null
+     * {@code from} includes everything before {@code to}.
+     */
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public List<ToDo> getToDosDue(LocalDate from, LocalDate to, int limit) {
+        Predicate<ToDo> due = toDo -> toDo.getDeadline() != null
+                && (from == null || !toDo.getDeadline().isBefore(from))
+                && toDo.getDeadline().isBefore(to);
+        // every pending write may hide one committed row
+        int fetch = (int) Math.min(Integer.MAX_VALUE, (long) limit + this.writeBehind.getPendingCount());
+
+        if (this.columns.isEnabled()) {
+            List<ToDo> toDos = this.writeBehind.overlay(this.columns.getToDosDue(from, to, fetch), due);
+            return toDos.size() > limit ? toDos.subList(0, limit) : toDos;
+        }
+
+        TypedQuery<ToDo> query;
+
+        if (from == null) {
+            query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_DUE_BEFORE, ToDo.class);
+        } else {
+            query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_DUE_BETWEEN, ToDo.class);
+            query.setParameter("from", from);
+        }
+
+        query.setParameter("to", to);
+        query.setMaxResults(fetch);
+
+        List<ToDo> toDos = this.writeBehind.overlay(query.getResultList(), due);
+
+        return toDos.size() > limit ? toDos.subList(0, limit) : toDos;
+    }
+
+    /**
+     * Chooses how {@link #queryToDos(ToDoQuery, ToDoQueryPlan)} evaluates the query, without touching the database.
+     */
+    public ToDoQueryPlan planQuery(ToDoQuery query) {
+        return this.queryEngine.plan(query);
+    }
+
+    @Timed(ToDoMetrics.REPOSITORY_TIMER)
+    public List<ToDo> queryToDos(ToDoQuery query, ToDoQueryPlan plan) {
+        // every pending write may hide one committed row
+        int fetch = (int) Math.min(Integer.MAX_VALUE, (long) query.limitOrDefault() + this.writeBehind.getPendingCount());
+        List<ToDo> committed = this.queryEngine.execute(query, plan, fetch);
+        List<ToDo> toDos = this.writeBehind.overlay(committed, query::matches);
+
+        // the overlay is in deadline order
+        if (toDos != committed) {
+            toDos.sort(ToDoQueryEngine.order(query));
+        }
 
-        return query.getResultList();
+        return toDos.size() > query.limitOrDefault() ? toDos.subList(0, query.limitOrDefault()) : toDos;
     }
 }
@@ -0,0 +1,138 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * ToDo specific meters next to the {@code @Timed} repository methods and the HTTP, Hibernate and
+ * datasource meters of Quarkus. All meters are registered up front, so recording is a lookup
+ * in a small array and an atomic increment; gauges are only evaluated when scraped.
+ */
+@Startup
+@ApplicationScoped
+public class ToDoMetrics {
+    public static final String REPOSITORY_TIMER = "todo.repository";
+
+    @Inject
+    MeterRegistry registry;
+    @Inject
+    SessionFactory sessionFactory;
+    @Inject
+    ToDoPriorityIndex priorityIndex;
+    @Inject
+    ToDoWriteBehind writeBehind;
+    @Inject
+    ToDoSearchIndex searchIndex;
+    @Inject
+    ToDoColumns columns;
+    @Inject
+    ToDoChangeFeed changeFeed;
+
+    private final Timer[] priorityLookups = new Timer[ToDo.TODO_PRIORITY_MAX - ToDo.TODO_PRIORITY_MIN + 1];
+    private final Map<ToDoChange.Kind, Counter[]> changes = new EnumMap<>(ToDoChange.Kind.class);
+    private final Map<ToDoChange.Kind, Counter> invalidPriorityRejections = new EnumMap<>(ToDoChange.Kind.class);
+    private Timer invalidPriorityLookups;
+
+    @PostConstruct
+    void register() {
+        for (int priority = ToDo.TODO_PRIORITY_MIN; priority <= ToDo.TODO_PRIORITY_MAX; priority++) {
+            int p = priority;
+            this.priorityLookups[priority - ToDo.TODO_PRIORITY_MIN] = Timer.builder("todo.repository.priority")
+                    .description("Lookups of the ToDos having a priority")
+                    .tag("priority", Integer.toString(priority))
+                    .register(this.registry);
+            Gauge.builder("todo.priority-index.size", this.priorityIndex, index -> index.size(p))
+                    .description("ToDos in the priority index")
+                    .tag("priority", Integer.toString(priority))
+                    .register(this.registry);
+        }
+
+        this.invalidPriorityLookups = Timer.builder("todo.repository.priority")
+                .tag("priority", "invalid")
+                .register(this.registry);
+
+        for (ToDoChange.Kind kind : ToDoChange.Kind.values()) {
+            Counter[] counters = new Counter[ToDo.TODO_PRIORITY_MAX - ToDo.TODO_PRIORITY_MIN + 1];
+
+            for (int priority = ToDo.TODO_PRIORITY_MIN; priority <= ToDo.TODO_PRIORITY_MAX; priority++) {
+                counters[priority - ToDo.TODO_PRIORITY_MIN] = Counter.builder("todo.changes")
+                        .description("Committed ToDo changes")
+                        .tag("kind", kind.name().toLowerCase())
+                        .tag("priority", Integer.toString(priority))
+                        .register(this.registry);
+            }
+
+            this.changes.put(kind, counters);
+            this.invalidPriorityRejections.put(kind, Counter.builder("todo.changes.rejected")
+                    .description("ToDo changes rejected for an invalid priority")
+                    .tag("kind", kind.name().toLowerCase())
+                    .tag("reason", "priority")
+                    .register(this.registry));
+        }
+
+        Gauge.builder("todo.cache.size", this, ToDoMetrics::cachedToDos)
+                .description("ToDos in the second-level cache")
+                .register(this.registry);
+        Gauge.builder("todo.search-index.size", this.searchIndex, ToDoSearchIndex::size)
+                .description("ToDos in the search index")
+                .register(this.registry);
+        FunctionCounter.builder("todo.columns.skipped", this.columns, ToDoColumns::getSkipped)
+                .description("ToDos left out of the columns for an invalid priority")
+                .register(this.registry);
+        Gauge.builder("todo.changes.subscribers", this.changeFeed, ToDoChangeFeed::getSubscribers)
+                .description("Open /api/todos/changes streams")
+                .register(this.registry);
+        Gauge.builder("todo.write-behind.queue.depth", this.writeBehind, writeBehind -> writeBehind.getStatistics().queueDepth())
+                .description("Writes waiting for the write-behind writer")
+                .register(this.registry);
+    }
+
+    void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ToDoChange change) {
+        ToDo toDo = change.current() != null ? change.current() : change.previous();
+
+        // invalid priorities are rejected before the commit, a legacy row is not counted
+        if (toDo != null && toDo.hasValidPriority()) {
+            this.changes.get(change.kind())[toDo.getPriority() - ToDo.TODO_PRIORITY_MIN].increment();
+        }
+    }
+
+    /**
+     * Counts a write rejected for an invalid priority, at the place it is rejected.
+     */
+    public void invalidPriorityRejected(ToDoChange.Kind kind) {
+        this.invalidPriorityRejections.get(kind).increment();
+    }
+
+    /**
+     * Timer of the lookups by the given priority; every invalid priority shares one timer.
+     */
+    public Timer priorityLookups(int priority) {
+        if (priority < ToDo.TODO_PRIORITY_MIN || priority > ToDo.TODO_PRIORITY_MAX) {
+            return this.invalidPriorityLookups;
+        }
+
+        return this.priorityLookups[priority - ToDo.TODO_PRIORITY_MIN];
+    }
+
+    private double cachedToDos() {
+        CacheRegionStatistics statistics = this.sessionFactory.getStatistics().getDomainDataRegionStatistics(ToDo.class.getName());
+
+        return statistics != null ? statistics.getElementCountInMemory() : 0;
+    }
+}
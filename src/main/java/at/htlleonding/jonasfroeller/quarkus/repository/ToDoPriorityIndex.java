@@ -0,0 +1,167 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoIndexCheck;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Materialized, deadline-sorted view of all ToDos per priority. It is rebuilt from the
+ * database at startup and afterwards kept up to date by the {@link ToDoChange}s of
+ * committed transactions, applied one at a time, so reads never touch the database and
+ * never take a lock.
+ */
+@ApplicationScoped
+public class ToDoPriorityIndex {
+    public static final Comparator<ToDo> DEADLINE_ORDER = Comparator
+            .comparing(ToDo::getDeadline, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(ToDo::getId);
+
+    @ConfigProperty(name = "todo.priority-index.enabled", defaultValue = "false")
+    boolean enabled;
+    @Inject
+    EntityManager entityManager;
+
+    private final List<ConcurrentSkipListSet<ToDo>> buckets = new ArrayList<>();
+    // ConcurrentSkipListSet#size() walks the whole set
+    private final AtomicIntegerArray sizes = new AtomicIntegerArray(ToDo.TODO_PRIORITY_MAX - ToDo.TODO_PRIORITY_MIN + 1);
+    // the indexed state by id: a change is removed from the bucket it was indexed in, whatever its previous state says
+    private final Map<Long, ToDo> indexed = new ConcurrentHashMap<>();
+
+    public ToDoPriorityIndex() {
+        for (int priority = ToDo.TODO_PRIORITY_MIN; priority <= ToDo.TODO_PRIORITY_MAX; priority++) {
+            this.buckets.add(new ConcurrentSkipListSet<>(DEADLINE_ORDER));
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        if (this.enabled) {
+            rebuild();
+        }
+    }
+
+    synchronized void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ToDoChange change) {
+        if (!this.enabled) {
+            return;
+        }
+
+        Long id = change.current() != null ? change.current().getId() : change.previous().getId();
+        ToDo previous = this.indexed.remove(id);
+
+        if (previous != null && bucket(previous.getPriority()).remove(previous)) {
+            this.sizes.decrementAndGet(previous.getPriority() - ToDo.TODO_PRIORITY_MIN);
+        }
+
+        if (change.current() != null && bucket(change.current().getPriority()).add(change.current())) {
+            this.sizes.incrementAndGet(change.current().getPriority() - ToDo.TODO_PRIORITY_MIN);
+            this.indexed.put(id, change.current());
+        }
+    }
+
+    public int size(int priority) {
+        return this.sizes.get(priority - ToDo.TODO_PRIORITY_MIN);
+    }
+
+    public List<ToDo> getAllToDosHavingPriority(int priority) {
+        if (priority < ToDo.TODO_PRIORITY_MIN || priority > ToDo.TODO_PRIORITY_MAX) {
+            return List.of();
+        }
+
+        return new ArrayList<>(bucket(priority));
+    }
+
+    @Transactional
+    public synchronized void rebuild() {
+        this.indexed.clear();
+
+        for (int priority = ToDo.TODO_PRIORITY_MIN; priority <= ToDo.TODO_PRIORITY_MAX; priority++) {
+            ConcurrentSkipListSet<ToDo> bucket = bucket(priority);
+            bucket.clear();
+
+            for (ToDo toDo : loadHavingPriority(priority)) {
+                ToDo copy = new ToDo(toDo);
+                bucket.add(copy);
+                this.indexed.put(copy.getId(), copy);
+            }
+
+            this.sizes.set(priority - ToDo.TODO_PRIORITY_MIN, bucket.size());
+        }
+    }
+
+    /**
+     * Compares every bucket with the result of the equivalent database query.
+     */
+    @Transactional
+    public ToDoIndexCheck check() {
+        if (!this.enabled) {
+            return new ToDoIndexCheck(false, true, 0, 0);
+        }
+
+        boolean consistent = true;
+        long indexed = 0;
+        long stored = 0;
+
+        for (int priority = ToDo.TODO_PRIORITY_MIN; priority <= ToDo.TODO_PRIORITY_MAX; priority++) {
+            List<ToDo> indexedToDos = getAllToDosHavingPriority(priority);
+            List<ToDo> storedToDos = new ArrayList<>(loadHavingPriority(priority));
+            storedToDos.sort(DEADLINE_ORDER);
+
+            indexed += indexedToDos.size();
+            stored += storedToDos.size();
+
+            if (indexedToDos.size() != storedToDos.size()) {
+                consistent = false;
+                continue;
+            }
+
+            for (int i = 0; i < indexedToDos.size(); i++) {
+                if (!sameState(indexedToDos.get(i), storedToDos.get(i))) {
+                    consistent = false;
+                    break;
+                }
+            }
+        }
+
+        return new ToDoIndexCheck(true, consistent, indexed, stored);
+    }
+
+    private List<ToDo> loadHavingPriority(int priority) {
+        TypedQuery<ToDo> query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL_HAVING_PRIORITY, ToDo.class);
+        query.setParameter("priority", priority);
+
+        return query.getResultList();
+    }
+
+    private ConcurrentSkipListSet<ToDo> bucket(int priority) {
+        return this.buckets.get(priority - ToDo.TODO_PRIORITY_MIN);
+    }
+
+    static boolean sameState(ToDo a, ToDo b) {
+        return a.getId().equals(b.getId())
+                && a.getPriority() == b.getPriority()
+                && Objects.equals(a.getDeadline(), b.getDeadline())
+                && Objects.equals(a.getDescription(), b.getDescription());
+    }
+}
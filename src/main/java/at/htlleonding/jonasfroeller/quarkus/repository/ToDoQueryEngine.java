@@ -0,0 +1,184 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoQuery;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoQueryPlan;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Evaluates {@link ToDoQuery}s either with a Criteria query or with a parallel scan of the
+ * {@link ToDoColumns}, whichever is estimated to be cheaper. The estimate takes the number of
+ * ToDos passing the priority and deadline filters from the {@link ToDoStatistics} counters and
+ * the {@link ToDoDeadlineBuckets}, so planning never touches the database. The database reads
+ * these candidates with one of the ToDo indexes and filters the descriptions row by row; the
+ * scan reads every row once, spread over {@code todo.query.parallelism} threads, and decodes the
+ * descriptions of the candidates only. The scan is only considered while the columns are enabled
+ * and hold at most {@code todo.query.memory-max-rows} ToDos.
+ */
+@ApplicationScoped
+public class ToDoQueryEngine {
+    // rough costs in nanoseconds, only their ratios matter
+    private static final double STATEMENT_COST = 100_000;
+    private static final double DATABASE_ROW_COST = 1_000;
+    private static final double FORK_COST = 20_000;
+    private static final double SCAN_ROW_COST = 2;
+    private static final double DESCRIPTION_COST = 150;
+
+    public static final Comparator<ToDo> PRIORITY_ORDER = Comparator
+            .comparingInt(ToDo::getPriority)
+            .thenComparing(ToDoPriorityIndex.DEADLINE_ORDER);
+
+    @ConfigProperty(name = "todo.query.parallelism", defaultValue = "0")
+    int parallelism;
+    @ConfigProperty(name = "todo.query.memory-max-rows", defaultValue = "20000000")
+    int memoryMaxRows;
+    @Inject
+    EntityManager entityManager;
+    @Inject
+    ToDoColumns columns;
+    @Inject
+    ToDoStatistics statistics;
+    @Inject
+    ToDoDeadlineBuckets deadlineBuckets;
+
+    private ForkJoinPool pool;
+
+    void onStart(@Observes StartupEvent event) {
+        // 0 means one thread per processor
+        this.pool = new ForkJoinPool(this.parallelism > 0 ? this.parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    public ToDoQueryPlan plan(ToDoQuery query) {
+        long total = 0;
+        long selected = 0;
+
+        for (int priority = ToDo.TODO_PRIORITY_MIN; priority <= ToDo.TODO_PRIORITY_MAX; priority++) {
+            long count = this.statistics.count(priority);
+            total += count;
+
+            if (!query.hasPriorities() || query.priorities().contains(priority)) {
+                selected += count;
+            }
+        }
+
+        // priority and deadline are assumed to be independent
+        long candidates = selected;
+
+        if (query.hasDeadlineRange() && total > 0) {
+            long due = this.deadlineBuckets.count(query.from(), query.to() != null ? query.to().plusDays(1) : null);
+            candidates = Math.round((double) selected * Math.min(due, total) / total);
+        }
+
+        double databaseCost = STATEMENT_COST + candidates * DATABASE_ROW_COST;
+        double memoryCost = Double.POSITIVE_INFINITY;
+        int rows = this.columns.isEnabled() ? this.columns.size() : -1;
+
+        if (rows >= 0 && rows <= this.memoryMaxRows) {
+            memoryCost = FORK_COST + rows * SCAN_ROW_COST / this.pool.getParallelism()
+                    + (query.hasDescriptionFilter() ? candidates * DESCRIPTION_COST : 0);
+        }
+
+        String plan;
+
+        if (ToDoQuery.PLAN_MEMORY.equals(query.plan()) && memoryCost < Double.POSITIVE_INFINITY) {
+            plan = ToDoQuery.PLAN_MEMORY;
+        } else if (ToDoQuery.PLAN_DATABASE.equals(query.plan())) {
+            plan = ToDoQuery.PLAN_DATABASE;
+        } else {
+            plan = memoryCost < databaseCost ? ToDoQuery.PLAN_MEMORY : ToDoQuery.PLAN_DATABASE;
+        }
+
+        return new ToDoQueryPlan(plan, candidates, memoryCost / 1_000, databaseCost / 1_000);
+    }
+
+    /**
+     * Matching ToDos in the order of the query, at most {@code limit} of them.
+     */
+    public List<ToDo> execute(ToDoQuery query, ToDoQueryPlan plan, int limit) {
+        List<ToDo> toDos = new ArrayList<>(plan.usesMemory()
+                ? this.columns.query(query, limit, this.pool)
+                : load(query, limit));
+        toDos.sort(order(query));
+
+        return toDos;
+    }
+
+    public static Comparator<ToDo> order(ToDoQuery query) {
+        return query.sortsByPriority() ? PRIORITY_ORDER : ToDoPriorityIndex.DEADLINE_ORDER;
+    }
+
+    private List<ToDo> load(ToDoQuery query, int limit) {
+        HibernateCriteriaBuilder builder = this.entityManager.unwrap(Session.class).getCriteriaBuilder();
+        JpaCriteriaQuery<ToDo> criteria = builder.createQuery(ToDo.class);
+        Root<ToDo> toDo = criteria.from(ToDo.class);
+        List<Predicate> where = new ArrayList<>();
+
+        where.add(builder.isFalse(toDo.<Boolean>get("removed")));
+
+        if (query.hasPriorities()) {
+            where.add(toDo.get("priority").in(query.priorities()));
+        }
+
+        if (query.from() != null) {
+            where.add(builder.greaterThanOrEqualTo(toDo.<LocalDate>get("deadline"), query.from()));
+        }
+
+        if (query.to() != null) {
+            where.add(builder.lessThanOrEqualTo(toDo.<LocalDate>get("deadline"), query.to()));
+        }
+
+        if (query.contains() != null) {
+            where.add(builder.like(toDo.<String>get("foldedDescription"), "%" + escapeLike(query.contains()) + "%", '\\'));
+        }
+
+        if (query.prefix() != null) {
+            where.add(builder.like(toDo.<String>get("foldedDescription"), escapeLike(query.prefix()) + "%", '\\'));
+        }
+
+        criteria.where(where.toArray(Predicate[]::new));
+
+        if (query.sortsByPriority()) {
+            criteria.orderBy(builder.asc(toDo.get("priority")), builder.asc(toDo.get("deadline"), true), builder.asc(toDo.get("id")));
+        } else {
+            criteria.orderBy(builder.asc(toDo.get("deadline"), true), builder.asc(toDo.get("id")));
+        }
+
+        TypedQuery<ToDo> typedQuery = this.entityManager.createQuery(criteria);
+        typedQuery.setHint(HibernateHints.HINT_COMMENT, ToDo.QUERY_FILTERED);
+        typedQuery.setMaxResults(limit);
+
+        return typedQuery.getResultList();
+    }
+
+    private static String escapeLike(String text) {
+        return ToDo.foldDescription(text)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
@@ -0,0 +1,142 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.Transactional;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.TreeSet;
+
+/**
+ * Revisions for the delta sync of {@code /api/todos/list?since=}. Every transaction that writes
+ * ToDos gets the next revision and stamps it on each ToDo it writes, tombstones of removed ToDos
+ * included. Revisions are handed out before commit, so a later revision may commit first: a sync
+ * only returns changes up to the {@link #getWatermark() watermark}, the highest revision below
+ * every transaction still running, and never skips a change that commits late.
+ * <p>
+ * Every {@code todo.sync.compact-every} tombstones older than {@code todo.sync.tombstone-retention}
+ * are deleted. A client whose revision is older than the compacted ones ({@link #getHorizon()})
+ * gets the full list instead of a delta. The horizon is not persisted: after a restart it starts
+ * at the newest revision in the table, like the list ETags every client has to refresh once.
+ */
+@ApplicationScoped
+public class ToDoRevisions {
+    private static final Logger LOG = Logger.getLogger(ToDoRevisions.class);
+    private static final Object TRANSACTION_REVISION = ToDoRevisions.class;
+
+    @ConfigProperty(name = "todo.sync.tombstone-retention", defaultValue = "P30D")
+    Duration tombstoneRetention;
+    @Inject
+    EntityManager entityManager;
+    @Inject
+    TransactionSynchronizationRegistry transactions;
+
+    private record Checkpoint(Instant at, long watermark) {
+    }
+
+    private final TreeSet<Long> running = new TreeSet<>();
+    // watermarks of the past compaction runs, oldest first
+    private final Deque<Checkpoint> checkpoints = new ArrayDeque<>();
+    private long last;
+    private volatile long horizon;
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        Long newest = this.entityManager.createNamedQuery(ToDo.QUERY_GET_MAX_REVISION, Long.class).getSingleResult();
+
+        synchronized (this) {
+            this.last = Math.max(this.last, newest != null ? newest : 0);
+            this.horizon = this.last;
+        }
+    }
+
+    /**
+     * Revision of the current transaction, allocated when the transaction first asks for it.
+     */
+    public long forTransaction() {
+        Long revision = (Long) this.transactions.getResource(TRANSACTION_REVISION);
+
+        if (revision != null) {
+            return revision;
+        }
+
+        long allocated;
+
+        synchronized (this) {
+            allocated = ++this.last;
+            this.running.add(allocated);
+        }
+
+        this.transactions.putResource(TRANSACTION_REVISION, allocated);
+        this.transactions.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                finished(allocated);
+            }
+        });
+
+        return allocated;
+    }
+
+    /**
+     * Every change up to this revision is committed (or rolled back); it never decreases.
+     */
+    public synchronized long getWatermark() {
+        return this.running.isEmpty() ? this.last : this.running.first() - 1;
+    }
+
+    /**
+     * Tombstones up to this revision may have been compacted.
+     */
+    public long getHorizon() {
+        return this.horizon;
+    }
+
+    @Scheduled(every = "${todo.sync.compact-every}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional
+    void compact() {
+        Instant now = Instant.now();
+        long revision = 0;
+
+        synchronized (this.checkpoints) {
+            this.checkpoints.addLast(new Checkpoint(now, getWatermark()));
+
+            // every tombstone up to a checkpoint's watermark was removed before the checkpoint
+            while (!this.checkpoints.isEmpty() && !this.checkpoints.getFirst().at().isAfter(now.minus(this.tombstoneRetention))) {
+                revision = this.checkpoints.removeFirst().watermark();
+            }
+        }
+
+        if (revision <= this.horizon) {
+            return;
+        }
+
+        // move the horizon first, so no delta is answered from a half compacted table
+        this.horizon = revision;
+        int deleted = this.entityManager.createNamedQuery(ToDo.QUERY_DELETE_REMOVED_UP_TO)
+                .setParameter("revision", revision)
+                .executeUpdate();
+
+        LOG.debugf("Compacted %d tombstones up to revision %d", deleted, revision);
+    }
+
+    private synchronized void finished(long revision) {
+        this.running.remove(revision);
+    }
+}
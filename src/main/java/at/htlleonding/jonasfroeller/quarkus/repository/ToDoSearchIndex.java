@@ -0,0 +1,350 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoSearch;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
+import jakarta.ws.rs.BadRequestException;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index of the words in ToDo descriptions. Like {@link ToDoPriorityIndex}
+ * it is built from the database at startup and afterwards kept up to date by the
+ * {@link ToDoChange}s of committed transactions; writes queued in write-behind mode become
+ * searchable once they are committed.
+ * <p>
+ * Words are kept in a sorted map, so a prefix is a range of the map and fuzzy candidates
+ * are limited to the words sharing the first letter. A prefix needs at least
+ * {@link ToDoSearch#PREFIX_LENGTH_MIN} characters and may expand to at most
+ * {@link ToDoSearch#PREFIX_WORDS_MAX} words; the merge of their ToDos stops early once it holds
+ * every ToDo. Matches are collected into a heap of {@code limit} ToDos in deadline order, so a
+ * search never sorts all of its matches.
+ * <p>
+ * Changes hold the write lock, searches the read lock, so a search never sees a ToDo half
+ * indexed or a posting set changing while it is merged.
+ */
+@ApplicationScoped
+public class ToDoSearchIndex {
+    private static final int REBUILD_CHUNK_SIZE = 500;
+
+    @Inject
+    EntityManager entityManager;
+
+    private final TreeMap<String, Set<Long>> postings = new TreeMap<>();
+    private final Map<Long, ToDo> toDos = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        rebuild();
+    }
+
+    void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ToDoChange change) {
+        if (change.current() != null) {
+            index(change.current());
+        } else {
+            remove(change.id());
+        }
+    }
+
+    @Transactional
+    public void rebuild() {
+        this.lock.writeLock().lock();
+
+        try {
+            this.postings.clear();
+            this.toDos.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        TypedQuery<ToDo> query = this.entityManager.createNamedQuery(ToDo.QUERY_GET_ALL, ToDo.class);
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, REBUILD_CHUNK_SIZE);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+
+        try (Stream<ToDo> toDos = query.getResultStream()) {
+            Iterator<ToDo> iterator = toDos.iterator();
+
+            for (int i = 1; iterator.hasNext(); i++) {
+                index(iterator.next());
+
+                if (i % REBUILD_CHUNK_SIZE == 0) {
+                    this.entityManager.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the ToDo, or replaces the indexed state of the ToDo with the same id.
+     */
+    public void index(ToDo toDo) {
+        ToDo copy = new ToDo(toDo);
+        Set<String> words = new HashSet<>(words(copy.getDescription()));
+        this.lock.writeLock().lock();
+
+        try {
+            ToDo previous = this.toDos.put(copy.getId(), copy);
+
+            if (previous != null) {
+                for (String word : words(previous.getDescription())) {
+                    if (!words.contains(word)) {
+                        removePosting(word, copy.getId());
+                    }
+                }
+            }
+
+            for (String word : words) {
+                this.postings.computeIfAbsent(word, w -> new HashSet<>()).add(copy.getId());
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        this.lock.writeLock().lock();
+
+        try {
+            ToDo previous = this.toDos.remove(id);
+
+            if (previous != null) {
+                for (String word : words(previous.getDescription())) {
+                    removePosting(word, id);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public List<ToDo> search(ToDoSearch search) {
+        this.lock.readLock().lock();
+
+        try {
+            return find(search);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+
+        try {
+            return this.toDos.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private List<ToDo> find(ToDoSearch search) {
+        List<Set<Long>> matches = new ArrayList<>();
+
+        for (String part : search.text().split("\\s+")) {
+            List<String> words = words(part);
+
+            for (int i = 0; i < words.size(); i++) {
+                String word = words.get(i);
+                boolean prefix = i == words.size() - 1 && part.endsWith("*");
+                Set<Long> ids = prefix ? prefixMatches(word) : search.fuzzy() ? fuzzyMatches(word) : this.postings.get(word);
+
+                if (ids == null || ids.isEmpty()) {
+                    return List.of();
+                }
+
+                matches.add(ids);
+            }
+        }
+
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+
+        // iterate the rarest word, probe the others
+        matches.sort(Comparator.comparingInt(Set::size));
+        Comparator<ToDo> order = ToDoPriorityIndex.DEADLINE_ORDER;
+        PriorityQueue<ToDo> best = new PriorityQueue<>(search.limit() + 1, order.reversed());
+
+        for (Long id : matches.get(0)) {
+            ToDo toDo = this.toDos.get(id);
+
+            if (toDo == null || !matchesAll(id, matches) || !matchesFilters(toDo, search)) {
+                continue;
+            }
+
+            if (best.size() < search.limit()) {
+                best.add(toDo);
+            } else if (order.compare(toDo, best.peek()) < 0) {
+                best.poll();
+                best.add(toDo);
+            }
+        }
+
+        List<ToDo> result = new ArrayList<>(best.size());
+        best.forEach(toDo -> result.add(new ToDo(toDo)));
+        result.sort(order);
+
+        return result;
+    }
+
+    /**
+     * ToDos having a word with the prefix. The words of the prefix are a range of the sorted map,
+     * merged in order until they are all merged or every ToDo matches.
+     */
+    private Set<Long> prefixMatches(String prefix) {
+        if (prefix.length() < ToDoSearch.PREFIX_LENGTH_MIN) {
+            throw new BadRequestException("Prefix must have at least " + ToDoSearch.PREFIX_LENGTH_MIN + " characters!");
+        }
+
+        Iterator<Set<Long>> words = this.postings.subMap(prefix, prefix + Character.MAX_VALUE).values().iterator();
+
+        if (!words.hasNext()) {
+            return Set.of();
+        }
+
+        Set<Long> first = words.next();
+
+        if (!words.hasNext()) {
+            return first;
+        }
+
+        Set<Long> ids = new HashSet<>(first);
+
+        for (int merged = 1; words.hasNext() && ids.size() < this.toDos.size(); merged++) {
+            if (merged == ToDoSearch.PREFIX_WORDS_MAX) {
+                throw new BadRequestException("Prefix must not match more than " + ToDoSearch.PREFIX_WORDS_MAX + " words!");
+            }
+
+            ids.addAll(words.next());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Words that start with the same letter as the searched word and are within its edit distance:
+     * none for words shorter than 4 letters, which only match exactly, one for 4 to 7 letters and
+     * two from 8 letters on. One edit already turns most short words into unrelated ones. Only
+     * words with the same first letter are candidates, so a typo in the first letter is never
+     * found; comparing against every word of the index would make each fuzzy word a full scan.
+     */
+    private Set<Long> fuzzyMatches(String word) {
+        int maxDistance = word.length() < 4 ? 0 : word.length() < 8 ? 1 : 2;
+        String first = word.substring(0, 1);
+        Set<Long> ids = new HashSet<>();
+
+        for (Map.Entry<String, Set<Long>> candidate : this.postings.subMap(first, first + Character.MAX_VALUE).entrySet()) {
+            if (Math.abs(candidate.getKey().length() - word.length()) <= maxDistance
+                    && distance(word, candidate.getKey(), maxDistance) <= maxDistance) {
+                ids.addAll(candidate.getValue());
+            }
+        }
+
+        return ids;
+    }
+
+    private static boolean matchesAll(Long id, List<Set<Long>> matches) {
+        for (int i = 1; i < matches.size(); i++) {
+            if (!matches.get(i).contains(id)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean matchesFilters(ToDo toDo, ToDoSearch search) {
+        if (search.priority() != null && toDo.getPriority() != search.priority()) {
+            return false;
+        }
+
+        if (search.from() == null && search.to() == null) {
+            return true;
+        }
+
+        return toDo.getDeadline() != null
+                && (search.from() == null || !toDo.getDeadline().isBefore(search.from()))
+                && (search.to() == null || !toDo.getDeadline().isAfter(search.to()));
+    }
+
+    private void removePosting(String word, long id) {
+        this.postings.computeIfPresent(word, (w, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Lower case runs of letters and digits, in order of occurrence.
+     */
+    static List<String> words(String text) {
+        if (text == null) {
+            return List.of();
+        }
+
+        List<String> words = new ArrayList<>();
+
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Levenshtein distance, or {@code max + 1} as soon as it is known to exceed {@code max}.
+     */
+    private static int distance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+
+            if (rowMin > max) {
+                return max + 1;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[b.length()];
+    }
+}
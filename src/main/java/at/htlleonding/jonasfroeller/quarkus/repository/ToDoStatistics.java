@@ -0,0 +1,216 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoIndexCheck;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoStats;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters behind {@code /api/todos/stats}: ToDos per priority and per deadline month, next to
+ * the per-day {@link ToDoDeadlineBuckets}. They are kept up to date by the {@link ToDoChange}s
+ * of committed transactions, so reading them never touches the table. Every
+ * {@code todo.stats.reconcile-every} they are compared with GROUP BY queries and replaced if
+ * they drifted; a round is skipped if a change was counted while the queries ran. Changes are
+ * counted under the lock the counters are replaced with, so none of them can be overwritten.
+ */
+@ApplicationScoped
+public class ToDoStatistics {
+    private static final Logger LOG = Logger.getLogger(ToDoStatistics.class);
+
+    @Inject
+    EntityManager entityManager;
+    @Inject
+    ToDoDeadlineBuckets deadlineBuckets;
+
+    private final AtomicLongArray priorities = new AtomicLongArray(ToDo.TODO_PRIORITY_MAX - ToDo.TODO_PRIORITY_MIN + 1);
+    private final AtomicLong withoutDeadline = new AtomicLong(); // of the ToDos in the priority counters
+    private final ConcurrentSkipListMap<YearMonth, Long> months = new ConcurrentSkipListMap<>();
+    private final AtomicLong changes = new AtomicLong();
+
+    /**
+     * Counts per priority as stored in the database, and how many of them have no deadline.
+     */
+    private record StoredPriorities(long[] counts, long withoutDeadline) {
+    }
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        reconcile();
+    }
+
+    synchronized void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ToDoChange change) {
+        this.deadlineBuckets.apply(change);
+
+        if (change.previous() != null) {
+            count(change.previous(), -1);
+        }
+
+        if (change.current() != null) {
+            count(change.current(), 1);
+        }
+
+        this.changes.incrementAndGet();
+    }
+
+    @Scheduled(every = "${todo.stats.reconcile-every}", delayed = "${todo.stats.reconcile-every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional
+    void reconcile() {
+        long changesBefore = this.changes.get();
+        StoredPriorities storedPriorities = loadPriorities();
+        Map<LocalDate, Long> storedDays = this.deadlineBuckets.load();
+
+        replace(changesBefore, storedPriorities, storedDays);
+    }
+
+    private synchronized void replace(long changesBefore, StoredPriorities storedPriorities, Map<LocalDate, Long> storedDays) {
+        if (this.changes.get() != changesBefore) {
+            LOG.debug("ToDos changed during reconciliation, trying again next time");
+            return;
+        }
+
+        Map<YearMonth, Long> storedMonths = months(storedDays);
+        boolean drifted = !storedDays.equals(this.deadlineBuckets.snapshot()) || !storedMonths.equals(this.months);
+
+        for (int i = 0; i < storedPriorities.counts().length; i++) {
+            drifted |= this.priorities.getAndSet(i, storedPriorities.counts()[i]) != storedPriorities.counts()[i];
+        }
+
+        drifted |= this.withoutDeadline.getAndSet(storedPriorities.withoutDeadline()) != storedPriorities.withoutDeadline();
+
+        if (drifted) {
+            this.months.keySet().removeIf(month -> !storedMonths.containsKey(month));
+            this.months.putAll(storedMonths);
+            this.deadlineBuckets.replace(storedDays);
+
+            if (changesBefore > 0) {
+                LOG.warn("ToDo statistics drifted from the database and were reconciled");
+            }
+        }
+    }
+
+    /**
+     * ToDos having the priority, 0 for an invalid priority.
+     */
+    public long count(int priority) {
+        return isValid(priority) ? this.priorities.get(priority - ToDo.TODO_PRIORITY_MIN) : 0;
+    }
+
+    /**
+     * Adds up the counters; the work depends on the number of months and days with deadlines, never on the number of ToDos.
+     */
+    public ToDoStats get(LocalDate today) {
+        Map<Integer, Long> byPriority = new LinkedHashMap<>();
+        long total = 0;
+
+        for (int priority = ToDo.TODO_PRIORITY_MIN; priority <= ToDo.TODO_PRIORITY_MAX; priority++) {
+            long count = this.priorities.get(priority - ToDo.TODO_PRIORITY_MIN);
+            byPriority.put(priority, count);
+            total += count;
+        }
+
+        Map<String, Long> byMonth = new LinkedHashMap<>();
+
+        for (Map.Entry<YearMonth, Long> month : this.months.entrySet()) {
+            byMonth.put(month.getKey().toString(), month.getValue());
+        }
+
+        return new ToDoStats(
+                today,
+                total,
+                byPriority,
+                this.withoutDeadline.get(),
+                this.deadlineBuckets.count(null, today),
+                this.deadlineBuckets.count(today, today.plusWeeks(1)),
+                byMonth
+        );
+    }
+
+    /**
+     * Compares the counters with the database without changing them.
+     */
+    @Transactional
+    public ToDoIndexCheck check() {
+        StoredPriorities storedPriorities = loadPriorities();
+        Map<LocalDate, Long> storedDays = this.deadlineBuckets.load();
+        boolean consistent = storedDays.equals(this.deadlineBuckets.snapshot()) && months(storedDays).equals(this.months)
+                && this.withoutDeadline.get() == storedPriorities.withoutDeadline();
+        long counted = 0;
+        long stored = 0;
+
+        for (int i = 0; i < storedPriorities.counts().length; i++) {
+            consistent &= this.priorities.get(i) == storedPriorities.counts()[i];
+            counted += this.priorities.get(i);
+            stored += storedPriorities.counts()[i];
+        }
+
+        return new ToDoIndexCheck(true, consistent, counted, stored);
+    }
+
+    /**
+     * The repository rejects invalid priorities, but a row written around it must not break the
+     * observer; such a ToDo is left out of the priority and no-deadline counters, here and in
+     * {@link #loadPriorities()}.
+     */
+    private void count(ToDo toDo, long delta) {
+        if (isValid(toDo.getPriority())) {
+            this.priorities.addAndGet(toDo.getPriority() - ToDo.TODO_PRIORITY_MIN, delta);
+
+            if (toDo.getDeadline() == null) {
+                this.withoutDeadline.addAndGet(delta);
+            }
+        }
+
+        if (toDo.getDeadline() != null) {
+            this.months.compute(YearMonth.from(toDo.getDeadline()), (month, count) -> {
+                long updated = (count != null ? count : 0) + delta;
+                return updated != 0 ? updated : null;
+            });
+        }
+    }
+
+    private StoredPriorities loadPriorities() {
+        long[] counts = new long[ToDo.TODO_PRIORITY_MAX - ToDo.TODO_PRIORITY_MIN + 1];
+        long withoutDeadline = 0;
+
+        for (Object[] row : this.entityManager.createNamedQuery(ToDo.QUERY_COUNT_BY_PRIORITY, Object[].class).getResultList()) {
+            int priority = ((Number) row[0]).intValue();
+
+            if (isValid(priority)) {
+                counts[priority - ToDo.TODO_PRIORITY_MIN] = (Long) row[1];
+                withoutDeadline += (Long) row[1] - (Long) row[2];
+            }
+        }
+
+        return new StoredPriorities(counts, withoutDeadline);
+    }
+
+    private static boolean isValid(int priority) {
+        return priority >= ToDo.TODO_PRIORITY_MIN && priority <= ToDo.TODO_PRIORITY_MAX;
+    }
+
+    private static Map<YearMonth, Long> months(Map<LocalDate, Long> days) {
+        Map<YearMonth, Long> months = new HashMap<>();
+        days.forEach((day, count) -> months.merge(YearMonth.from(day), count, Long::sum));
+
+        return months;
+    }
+}
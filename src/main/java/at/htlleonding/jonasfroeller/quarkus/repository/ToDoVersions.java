@@ -0,0 +1,80 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latest known version per ToDo id and revisions counting the committed changes of each list
+ * bucket, used to answer conditional requests without touching the database. Bucket
+ * {@link #ALL} counts every change, bucket p the changes of ToDos that had or have priority p.
+ */
+@ApplicationScoped
+public class ToDoVersions {
+    public static final int ALL = 0;
+    private static final long REMOVED = Long.MAX_VALUE;
+
+    @ConfigProperty(name = "todo.etag.known-versions", defaultValue = "100000")
+    int capacity;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLongArray revisions = new AtomicLongArray(ToDo.TODO_PRIORITY_MAX + 1);
+    private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+
+    void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ToDoChange change) {
+        if (change.current() != null) {
+            remember(change.current());
+        } else {
+            // a removed id never comes back, so it must never match a client's ETag again
+            this.versions.put(change.id(), REMOVED);
+        }
+
+        this.revisions.incrementAndGet(ALL);
+
+        if (change.previous() != null && isBucket(change.previous().getPriority())) {
+            this.revisions.incrementAndGet(change.previous().getPriority());
+        }
+
+        if (change.current() != null && isBucket(change.current().getPriority())
+                && (change.previous() == null || change.previous().getPriority() != change.current().getPriority())) {
+            this.revisions.incrementAndGet(change.current().getPriority());
+        }
+    }
+
+    /**
+     * Keeps the highest version seen, so a slow reader can never overwrite a newer version.
+     */
+    public void remember(ToDo toDo) {
+        if (toDo.getVersion() != null && (this.versions.size() < this.capacity || this.versions.containsKey(toDo.getId()))) {
+            this.versions.merge(toDo.getId(), toDo.getVersion(), Math::max);
+        }
+    }
+
+    public Long get(long id) {
+        return this.versions.get(id);
+    }
+
+    /**
+     * Number of committed changes of the bucket since the start.
+     */
+    public long getRevision(int bucket) {
+        return this.revisions.get(bucket);
+    }
+
+    /**
+     * Changes with every committed write of the bucket and differs between application starts.
+     */
+    public String getListRevision(int bucket) {
+        return this.epoch + "." + this.revisions.get(bucket);
+    }
+
+    private static boolean isBucket(int priority) {
+        return priority >= ToDo.TODO_PRIORITY_MIN && priority <= ToDo.TODO_PRIORITY_MAX;
+    }
+}
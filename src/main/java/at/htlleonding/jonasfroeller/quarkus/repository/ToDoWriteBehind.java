@@ -0,0 +1,339 @@
+package at.htlleonding.jonasfroeller.quarkus.repository;
+
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoChange;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoWriteBehindStatistics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.ws.rs.ServiceUnavailableException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Opt-in write-behind mode of the repository ({@code todo.write-behind.enabled}).
+ * <p>
+ * Writes are validated by the caller, become visible through {@link #getPending(long)} and
+ * {@link #overlay(List, Predicate)} immediately and are appended to a bounded queue. A single
+ * writer thread drains the queue and commits up to {@code todo.write-behind.batch-size} writes,
+ * or whatever arrived within {@code todo.write-behind.max-delay}, in one transaction. A full
+ * queue rejects writes with 503 and {@code Retry-After}. The queue is drained before shutdown.
+ * Accepted writes that cannot be committed are logged and counted as dropped.
+ */
+@ApplicationScoped
+public class ToDoWriteBehind {
+    private static final Logger LOG = Logger.getLogger(ToDoWriteBehind.class);
+
+    /**
+     * A queued write; {@code state} is the complete new state, null for removals.
+     */
+    public record PendingWrite(ToDoChange.Kind kind, long id, ToDo state) {
+    }
+
+    @ConfigProperty(name = "todo.write-behind.enabled", defaultValue = "false")
+    boolean enabled;
+    @ConfigProperty(name = "todo.write-behind.queue-capacity", defaultValue = "10000")
+    int queueCapacity;
+    @ConfigProperty(name = "todo.write-behind.batch-size", defaultValue = "500")
+    int batchSize;
+    @ConfigProperty(name = "todo.write-behind.max-delay", defaultValue = "PT0.05S")
+    Duration maxDelay;
+    @ConfigProperty(name = "todo.write-behind.retry-after", defaultValue = "PT1S")
+    Duration retryAfter;
+    @ConfigProperty(name = "todo.write-behind.shutdown-timeout", defaultValue = "PT30S")
+    Duration shutdownTimeout;
+    @Inject
+    EntityManager entityManager;
+    @Inject
+    ToDoRevisions revisions;
+    @Inject
+    Event<ToDoChange> toDoChanges;
+    @Inject
+    MeterRegistry registry;
+
+    private final ConcurrentHashMap<Long, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private DistributionSummary batchSizes;
+    private Counter droppedWrites;
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+    private volatile boolean accepting;
+    private volatile CountDownLatch commitGate = new CountDownLatch(0);
+    private BlockingQueue<PendingWrite> queue;
+    private Thread writer;
+
+    @PostConstruct
+    void register() {
+        this.batchSizes = DistributionSummary.builder("todo.write-behind.batch.size")
+                .description("Writes per write-behind commit")
+                .publishPercentiles(0.5, 0.99)
+                .register(this.registry);
+        this.droppedWrites = Counter.builder("todo.write-behind.dropped")
+                .description("Accepted writes that could not be committed")
+                .register(this.registry);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!this.enabled) {
+            return;
+        }
+
+        this.queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        this.accepting = true;
+        this.writer = new Thread(this::drain, "todo-write-behind");
+        this.writer.start();
+    }
+
+    void onStop(@Observes ShutdownEvent event) throws InterruptedException {
+        stop();
+    }
+
+    /**
+     * Stops accepting writes and waits up to {@code todo.write-behind.shutdown-timeout} for the
+     * writer to commit the queued ones.
+     */
+    public void stop() throws InterruptedException {
+        if (this.writer == null) {
+            return;
+        }
+
+        // the writer finishes the queue before it stops
+        this.accepting = false;
+        this.writer.join(this.shutdownTimeout.toMillis());
+
+        if (this.writer.isAlive()) {
+            int lost = this.queue.size();
+            LOG.errorf("Write-behind queue not drained within %s, %d writes lost", this.shutdownTimeout, lost);
+            drop(lost);
+        }
+    }
+
+    /**
+     * Makes the writer wait for the latch before its next commit, so a test can fill the queue
+     * while the writer holds a batch. Released by counting the latch down.
+     */
+    public void holdCommits(CountDownLatch release) {
+        this.commitGate = release;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public synchronized void enqueue(ToDoChange.Kind kind, long id, ToDo state) {
+        PendingWrite write = new PendingWrite(kind, id, state != null ? new ToDo(state) : null);
+
+        // publish before offering, so the writer can never commit a write that is not yet pending
+        PendingWrite before = this.accepting ? this.pending.put(id, write) : null;
+
+        if (!this.accepting || !this.queue.offer(write)) {
+            if (before != null) {
+                this.pending.put(id, before);
+            } else {
+                this.pending.remove(id, write);
+            }
+
+            throw new ServiceUnavailableException("Write queue is full!", Math.max(1, this.retryAfter.toSeconds()));
+        }
+
+        this.enqueued.incrementAndGet();
+    }
+
+    /**
+     * Latest not yet committed write of the ToDo, or null.
+     */
+    public PendingWrite getPending(long id) {
+        return this.enabled ? this.pending.get(id) : null;
+    }
+
+    /**
+     * Applies the pending writes to a list of committed ToDos. ToDos not matching the filter
+     * after a pending write are dropped; the result is in deadline order.
+     */
+    public List<ToDo> overlay(List<ToDo> committed, Predicate<ToDo> filter) {
+        if (!this.enabled || this.pending.isEmpty()) {
+            return committed;
+        }
+
+        Map<Long, ToDo> toDos = new LinkedHashMap<>();
+        committed.forEach(toDo -> toDos.put(toDo.getId(), toDo));
+
+        for (PendingWrite write : this.pending.values()) {
+            if (write.state() != null && filter.test(write.state())) {
+                toDos.put(write.id(), write.state());
+            } else {
+                toDos.remove(write.id());
+            }
+        }
+
+        List<ToDo> result = new ArrayList<>(toDos.values());
+        result.sort(ToDoPriorityIndex.DEADLINE_ORDER);
+
+        return result;
+    }
+
+    /**
+     * Number of ToDos with a not yet committed write; reads of committed rows fetch that many
+     * more, so the overlay cannot leave them short of their limit.
+     */
+    public int getPendingCount() {
+        return this.enabled ? this.pending.size() : 0;
+    }
+
+    /**
+     * Number of writes accepted so far, so revisions can account for pending writes.
+     */
+    public long getEnqueued() {
+        return this.enqueued.get();
+    }
+
+    public ToDoWriteBehindStatistics getStatistics() {
+        return new ToDoWriteBehindStatistics(
+                this.enabled,
+                this.queue != null ? this.queue.size() : 0,
+                this.queueCapacity,
+                this.commits.get(),
+                this.writes.get(),
+                this.dropped.get(),
+                this.lastBatchSize,
+                this.maxBatchSize
+        );
+    }
+
+    private void drain() {
+        List<PendingWrite> batch = new ArrayList<>(this.batchSize);
+
+        while (this.accepting || !this.queue.isEmpty()) {
+            try {
+                PendingWrite first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                this.queue.drainTo(batch, this.batchSize - batch.size());
+                long deadline = System.nanoTime() + this.maxDelay.toNanos();
+
+                // group commit: wait a little for more writes unless we are shutting down
+                while (batch.size() < this.batchSize && this.accepting) {
+                    PendingWrite next = this.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                    this.queue.drainTo(batch, this.batchSize - batch.size());
+                }
+
+                this.commitGate.await();
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Write-behind writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingWrite> batch) {
+        try {
+            QuarkusTransaction.requiringNew().run(() -> apply(batch));
+        } catch (RuntimeException e) {
+            LOG.warnf(e, "Group commit of %d writes failed, retrying them one by one", batch.size());
+
+            for (PendingWrite write : batch) {
+                try {
+                    QuarkusTransaction.requiringNew().run(() -> apply(List.of(write)));
+                } catch (RuntimeException single) {
+                    LOG.errorf(single, "Dropping write-behind %s of ToDo %d", write.kind(), write.id());
+                    drop(1);
+                }
+            }
+        }
+
+        for (PendingWrite write : batch) {
+            this.pending.remove(write.id(), write);
+        }
+
+        this.commits.incrementAndGet();
+        this.writes.addAndGet(batch.size());
+        this.lastBatchSize = batch.size();
+        this.maxBatchSize = Math.max(this.maxBatchSize, batch.size());
+        this.batchSizes.record(batch.size());
+    }
+
+    private void drop(int count) {
+        this.dropped.addAndGet(count);
+        this.droppedWrites.increment(count);
+    }
+
+    private void apply(List<PendingWrite> batch) {
+        List<Runnable> publications = new ArrayList<>(batch.size());
+
+        for (PendingWrite write : batch) {
+            switch (write.kind()) {
+                case CREATED -> {
+                    ToDo toDo = new ToDo(write.state());
+                    toDo.assignId(write.id());
+                    toDo.markChanged(this.revisions.forTransaction());
+                    this.entityManager.persist(toDo);
+                    publications.add(() -> this.toDoChanges.fire(ToDoChange.created(toDo)));
+                }
+                case UPDATED, REPLACED -> {
+                    ToDo found = this.entityManager.find(ToDo.class, write.id());
+
+                    if (found != null && !found.hasBeenRemoved()) {
+                        ToDo previous = new ToDo(found);
+                        found.update(write.state());
+                        found.markChanged(this.revisions.forTransaction());
+                        publications.add(() -> this.toDoChanges.fire(write.kind() == ToDoChange.Kind.UPDATED
+                                ? ToDoChange.updated(previous, found)
+                                : ToDoChange.replaced(previous, found)));
+                    }
+                }
+                case REMOVED -> {
+                    ToDo found = this.entityManager.find(ToDo.class, write.id());
+
+                    if (found != null && !found.hasBeenRemoved()) {
+                        found.markRemoved(this.revisions.forTransaction());
+                        publications.add(() -> this.toDoChanges.fire(ToDoChange.removed(found)));
+                    }
+                }
+            }
+        }
+
+        // versions are incremented by the flush, publish afterwards
+        this.entityManager.flush();
+        publications.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,219 @@
+package at.htlleonding.jonasfroeller.quarkus;
+
+import at.htlleonding.jonasfroeller.quarkus.boundary.ToDoResource;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoColumns;
+import io.quarkus.test.common.http.TestHTTPEndpoint;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.util.List;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The off-heap columns: queries give the same result with the memory and the database plan,
+ * and the columns follow every change, free rows included.
+ */
+@QuarkusTest
+@TestProfile(ToDoColumnsTest.ColumnsProfile.class)
+@TestHTTPEndpoint(ToDoResource.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ToDoColumnsTest {
+    public static class ColumnsProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("todo.columns.enabled", "true");
+        }
+    }
+
+    @Inject
+    ToDoColumns columns;
+
+    @Test
+    @Order(0)
+    void testQueryGivesSameResultWithBothPlans() {
+        for (String plan : List.of("memory", "database")) {
+            JsonObject query = Json.createObjectBuilder()
+                    .add("priorities", Json.createArrayBuilder().add(1).add(3))
+                    .add("from", "2023-11-01")
+                    .add("to", "2024-12-31")
+                    .add("contains", "E")
+                    .add("sort", "priority")
+                    .add("plan", plan)
+                    .build();
+
+            given()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(query.toString())
+                    .when().post("query")
+                    .then()
+                    .statusCode(200)
+                    .header("X-Query-Plan", is(plan))
+                    .header("X-Query-Estimated-Rows", notNullValue())
+                    .header("X-Query-Cost", containsString("memory="))
+                    .body("description", contains("Bake christmas cookies.", "Feed cats.", "Prepare exam questions."));
+
+            JsonObject prefix = Json.createObjectBuilder()
+                    .add("prefix", "do ")
+                    .add("plan", plan)
+                    .build();
+
+            given()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(prefix.toString())
+                    .when().post("query")
+                    .then()
+                    .statusCode(200)
+                    .body("description", contains("Do laundry."));
+        }
+
+        // without a plan the cheaper one is chosen
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Json.createObjectBuilder().add("limit", 2).build().toString())
+                .when().post("query")
+                .then()
+                .statusCode(200)
+                .header("X-Query-Plan", anyOf(is("memory"), is("database")))
+                .body("description", contains("Change tires.", "Feed cats."));
+    }
+
+    @Test
+    @Order(1)
+    void testRemovedToDoLeavesNoMatchingRow() {
+        String headerLocation = given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(toDo("Sweep chimney.", 2).toString())
+                .when().post()
+                .then()
+                .statusCode(201)
+                .extract()
+                .header("Location");
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(toDo("Sweep chimney twice.", 1).toString())
+                .when().patch(headerLocation)
+                .then()
+                .statusCode(204);
+
+        given()
+                .when().get("list/1")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Change tires.", "Sweep chimney twice.", "Bake christmas cookies."));
+
+        given()
+                .when().delete(headerLocation)
+                .then()
+                .statusCode(204);
+
+        // the free row matches no priority, whatever priorities are asked for
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Json.createObjectBuilder().add("contains", "chimney").add("plan", "memory").build().toString())
+                .when().post("query")
+                .then()
+                .statusCode(200)
+                .header("X-Query-Plan", is("memory"))
+                .body("description", empty());
+
+        given()
+                .when().get("list/1")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Change tires.", "Bake christmas cookies."));
+    }
+
+    @Test
+    @Order(2)
+    void testDescriptionFilterIgnoresCaseBeyondAsciiWithBothPlans() {
+        String headerLocation = given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(toDo("Buy ÄPFEL at the Market.", 2).toString())
+                .when().post()
+                .then()
+                .statusCode(201)
+                .extract()
+                .header("Location");
+
+        for (String plan : List.of("memory", "database")) {
+            for (JsonObject filter : List.of(
+                    Json.createObjectBuilder().add("contains", "äpfel").build(),
+                    Json.createObjectBuilder().add("contains", "MARKET").build(),
+                    Json.createObjectBuilder().add("prefix", "buy ä").build())) {
+                given()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(Json.createObjectBuilder(filter).add("plan", plan).build().toString())
+                        .when().post("query")
+                        .then()
+                        .statusCode(200)
+                        .header("X-Query-Plan", is(plan))
+                        .body("description", contains("Buy ÄPFEL at the Market."));
+            }
+        }
+
+        given()
+                .when().delete(headerLocation)
+                .then()
+                .statusCode(204);
+    }
+
+    @Test
+    @Order(3)
+    void testInvalidPriorityIsSkippedAndRebuildKeepsServing() {
+        long skippedBefore = this.columns.getSkipped();
+        int sizeBefore = this.columns.size();
+
+        this.columns.put(ToDo.restore(Long.MAX_VALUE, null, "Written around the repository.", null, 0, 0));
+
+        assertEquals(skippedBefore + 1, this.columns.getSkipped());
+        assertEquals(sizeBefore, this.columns.size());
+
+        this.columns.rebuild();
+
+        assertEquals(sizeBefore, this.columns.size());
+        given()
+                .when().get("list/1")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Change tires.", "Bake christmas cookies."));
+    }
+
+    @Test
+    @Order(99)
+    void testColumnsAreConsistentWithDatabaseAfterAllChanges() {
+        given()
+                .when().get("diagnostics/columns")
+                .then()
+                .statusCode(200)
+                .body("enabled", is(true))
+                .body("consistent", is(true));
+    }
+
+    private static JsonObject toDo(String description, int priority) {
+        return Json.createObjectBuilder()
+                .add("description", description)
+                .add("deadline", "2023-11-10")
+                .add("priority", priority)
+                .build();
+    }
+}
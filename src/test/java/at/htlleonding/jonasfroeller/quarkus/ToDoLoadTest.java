@@ -0,0 +1,323 @@
+package at.htlleonding.jonasfroeller.quarkus;
+
+import at.htlleonding.jonasfroeller.quarkus.boundary.ToDoResource;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import io.quarkus.test.common.http.TestHTTPEndpoint;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.json.Json;
+import jakarta.ws.rs.core.MediaType;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * End-to-end load test of {@code /api/todos} against the in-process application, reporting
+ * p50/p99/p99.9 latencies and throughput per endpoint. Only runs with the {@code load-test}
+ * profile ({@code ./mvnw test -Dload-test}); it is configured with system properties:
+ * <ul>
+ *     <li>{@code todo.load-test.mode}: {@code closed} (a fixed number of users, each sending the
+ *     next request when the last one is answered) or {@code open} (requests arrive at a fixed
+ *     rate, latency is measured from the intended start, so queueing is not hidden)</li>
+ *     <li>{@code todo.load-test.users}, {@code todo.load-test.rate}: users in closed, requests
+ *     per second in open mode</li>
+ *     <li>{@code todo.load-test.warmup}, {@code todo.load-test.duration}: seconds</li>
+ *     <li>{@code todo.load-test.mix}: weights per endpoint, e.g. {@code post=20,get=45,patch=15,delete=5,list=15}</li>
+ * </ul>
+ */
+@QuarkusTest
+@TestHTTPEndpoint(ToDoResource.class)
+@EnabledIfSystemProperty(named = "todo.load-test.enabled", matches = "true")
+class ToDoLoadTest {
+    private static final Logger LOG = Logger.getLogger(ToDoLoadTest.class);
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(1);
+
+    private final String mode = System.getProperty("todo.load-test.mode", "closed");
+    private final int users = Integer.getInteger("todo.load-test.users", 16);
+    private final int rate = Integer.getInteger("todo.load-test.rate", 500);
+    private final Duration warmup = Duration.ofSeconds(Integer.getInteger("todo.load-test.warmup", 5));
+    private final Duration duration = Duration.ofSeconds(Integer.getInteger("todo.load-test.duration", 30));
+    private final String mix = System.getProperty("todo.load-test.mix", "post=20,get=45,patch=15,delete=5,list=15");
+
+    @TestHTTPEndpoint(ToDoResource.class)
+    @TestHTTPResource
+    URL todos;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final List<Long> ids = new ArrayList<>();
+    private final List<String> bodies = MockTodosRepository.fixtures().stream().map(ToDoLoadTest::toJson).toList();
+    private final Map<Operation, Statistics> statistics = new EnumMap<>(Operation.class);
+    private Map<Operation, Integer> weights;
+    private int totalWeight;
+    private volatile long measureFrom;
+
+    enum Operation {
+        POST, GET, PATCH, DELETE, LIST
+    }
+
+    private record Call(Operation operation, HttpRequest request) {
+    }
+
+    private static final class Statistics {
+        final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+        final AtomicLong clientErrors = new AtomicLong();
+        final AtomicLong serverErrors = new AtomicLong();
+    }
+
+    @Test
+    void runLoad() throws Exception {
+        requireSettings();
+        this.weights = parseMix(this.mix);
+        this.totalWeight = this.weights.values().stream().mapToInt(Integer::intValue).sum();
+
+        for (Operation operation : Operation.values()) {
+            this.statistics.put(operation, new Statistics());
+        }
+
+        ToDo[] existing = given().when().get("list").then().statusCode(200).extract().as(ToDo[].class);
+
+        for (ToDo toDo : existing) {
+            this.ids.add(toDo.getId());
+        }
+
+        long start = System.nanoTime();
+        this.measureFrom = start + this.warmup.toNanos();
+        long end = this.measureFrom + this.duration.toNanos();
+
+        if (this.mode.equals("open")) {
+            runOpenLoop(start, end);
+        } else {
+            runClosedLoop(end);
+        }
+
+        report();
+
+        for (Operation operation : Operation.values()) {
+            assertEquals(0, this.statistics.get(operation).serverErrors.get(), operation + " failed with 5xx or I/O errors");
+        }
+    }
+
+    /**
+     * Fails before the first request: a rate that is not positive would divide by zero or give a
+     * negative interval between the requests of the open loop.
+     */
+    private void requireSettings() {
+        if (this.mode.equals("open") && (this.rate < 1 || this.rate > TimeUnit.SECONDS.toNanos(1))) {
+            throw new IllegalArgumentException("todo.load-test.rate must be between 1 and " + TimeUnit.SECONDS.toNanos(1) + ", was " + this.rate);
+        }
+
+        if (!this.mode.equals("open") && this.users < 1) {
+            throw new IllegalArgumentException("todo.load-test.users must be at least 1, was " + this.users);
+        }
+    }
+
+    private void runClosedLoop(long end) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.users);
+
+        for (int i = 0; i < this.users; i++) {
+            executor.submit(() -> {
+                while (System.nanoTime() < end) {
+                    Call call = call(nextOperation());
+                    long start = System.nanoTime();
+                    HttpResponse<String> response = null;
+
+                    try {
+                        response = this.client.send(call.request(), HttpResponse.BodyHandlers.ofString());
+                    } catch (Exception e) {
+                        LOG.debugf(e, "%s failed", call.operation());
+                    }
+
+                    record(call.operation(), start, response);
+                }
+
+                return null;
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(end - System.nanoTime() + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS);
+    }
+
+    private void runOpenLoop(long start, long end) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / this.rate;
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        for (long intended = start; intended < end; intended += interval) {
+            long wait = intended - System.nanoTime();
+
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Call call = call(nextOperation());
+            long intendedStart = intended;
+
+            // latency counts from the intended start: a slow server delays no later request
+            inFlight.add(this.client.sendAsync(call.request(), HttpResponse.BodyHandlers.ofString())
+                    .handle((response, e) -> {
+                        record(call.operation(), intendedStart, response);
+                        return null;
+                    }));
+        }
+
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).orTimeout(1, TimeUnit.MINUTES).join();
+    }
+
+    private Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(this.totalWeight);
+
+        for (Map.Entry<Operation, Integer> weight : this.weights.entrySet()) {
+            pick -= weight.getValue();
+
+            if (pick < 0) {
+                return weight.getKey();
+            }
+        }
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Builds the request; ToDo operations turn into a POST while no ToDo is left.
+     */
+    private Call call(Operation operation) {
+        String body = this.bodies.get(ThreadLocalRandom.current().nextInt(this.bodies.size()));
+        Long id = operation == Operation.DELETE ? takeId() : anyId();
+
+        if (id == null && operation != Operation.LIST) {
+            operation = Operation.POST;
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder().timeout(Duration.ofSeconds(30));
+
+        HttpRequest request = switch (operation) {
+            case POST -> builder.uri(uri("")).header("Content-Type", MediaType.APPLICATION_JSON)
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+            case GET -> builder.uri(uri(Long.toString(id))).GET().build();
+            case PATCH -> builder.uri(uri(Long.toString(id))).header("Content-Type", MediaType.APPLICATION_JSON)
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body)).build();
+            case DELETE -> builder.uri(uri(Long.toString(id))).DELETE().build();
+            case LIST -> builder.uri(uri("list")).GET().build();
+        };
+
+        return new Call(operation, request);
+    }
+
+    private void record(Operation operation, long start, HttpResponse<String> response) {
+        if (operation == Operation.POST && response != null && response.statusCode() == 201) {
+            response.headers().firstValue("Location").ifPresent(location ->
+                    addId(Long.parseLong(location.substring(location.lastIndexOf('/') + 1))));
+        }
+
+        if (start < this.measureFrom) {
+            return;
+        }
+
+        Statistics statistics = this.statistics.get(operation);
+        statistics.latencies.recordValue(Math.min(System.nanoTime() - start, HIGHEST_LATENCY));
+
+        if (response == null || response.statusCode() >= 500) {
+            statistics.serverErrors.incrementAndGet();
+        } else if (response.statusCode() >= 400) {
+            // e.g. a GET of a ToDo another user just deleted
+            statistics.clientErrors.incrementAndGet();
+        }
+    }
+
+    private void report() {
+        double seconds = this.duration.toNanos() / 1e9;
+        StringBuilder report = new StringBuilder()
+                .append(String.format("%n%s loop, %s, %ds measured after %ds warmup, mix %s%n",
+                        this.mode, this.mode.equals("open") ? this.rate + " req/s" : this.users + " users",
+                        this.duration.toSeconds(), this.warmup.toSeconds(), this.mix))
+                .append(String.format("%-8s %9s %7s %7s %10s %9s %9s %9s %9s%n",
+                        "endpoint", "requests", "4xx", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+
+        for (Operation operation : Operation.values()) {
+            Statistics statistics = this.statistics.get(operation);
+            Histogram latencies = statistics.latencies;
+
+            report.append(String.format("%-8s %9d %7d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation,
+                    latencies.getTotalCount(),
+                    statistics.clientErrors.get(),
+                    statistics.serverErrors.get(),
+                    latencies.getTotalCount() / seconds,
+                    latencies.getValueAtPercentile(50) / 1e6,
+                    latencies.getValueAtPercentile(99) / 1e6,
+                    latencies.getValueAtPercentile(99.9) / 1e6,
+                    latencies.getMaxValue() / 1e6));
+        }
+
+        LOG.info(report);
+    }
+
+    private URI uri(String path) {
+        return URI.create(this.todos.toString().replaceAll("/$", "") + "/" + path);
+    }
+
+    private synchronized void addId(long id) {
+        this.ids.add(id);
+    }
+
+    private synchronized Long anyId() {
+        return this.ids.isEmpty() ? null : this.ids.get(ThreadLocalRandom.current().nextInt(this.ids.size()));
+    }
+
+    private synchronized Long takeId() {
+        if (this.ids.isEmpty()) {
+            return null;
+        }
+
+        int index = ThreadLocalRandom.current().nextInt(this.ids.size());
+        Long id = this.ids.get(index);
+        this.ids.set(index, this.ids.get(this.ids.size() - 1));
+        this.ids.remove(this.ids.size() - 1);
+
+        return id;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+
+        return weights;
+    }
+
+    private static String toJson(ToDo toDo) {
+        return Json.createObjectBuilder()
+                .add("description", toDo.getDescription())
+                .add("deadline", toDo.getDeadline().toString())
+                .add("priority", toDo.getPriority())
+                .build()
+                .toString();
+    }
+}
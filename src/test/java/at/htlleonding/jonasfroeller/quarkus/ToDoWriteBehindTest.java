@@ -0,0 +1,352 @@
+package at.htlleonding.jonasfroeller.quarkus;
+
+import at.htlleonding.jonasfroeller.quarkus.boundary.ToDoResource;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.model.ToDoWriteBehindStatistics;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoWriteBehind;
+import io.quarkus.test.common.http.TestHTTPEndpoint;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The repository in write-behind mode: writes are visible before they are committed, arrive
+ * in group commits, are rejected with 503 while the queue is full and are drained on stop.
+ */
+@QuarkusTest
+@TestProfile(ToDoWriteBehindTest.WriteBehindProfile.class)
+@TestHTTPEndpoint(ToDoResource.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ToDoWriteBehindTest {
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
+    private static final int QUEUE_CAPACITY = 8;
+    private static final int BATCH_SIZE = 50;
+
+    public static class WriteBehindProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "todo.write-behind.enabled", "true",
+                    "todo.write-behind.queue-capacity", Integer.toString(QUEUE_CAPACITY),
+                    "todo.write-behind.batch-size", Integer.toString(BATCH_SIZE),
+                    "todo.write-behind.max-delay", "200ms",
+                    // /list/{priority} reads the database on a worker thread
+                    "todo.priority-index.enabled", "false"
+            );
+        }
+    }
+
+    @Inject
+    ToDoWriteBehind writeBehind;
+
+    @Test
+    @Order(0)
+    void testAddedToDoIsVisibleBeforeAndAfterCommit() {
+        String headerLocation = given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(toDo("Book train tickets.", 2).toString())
+                .when().post()
+                .then()
+                .statusCode(201)
+                .extract()
+                .header("Location");
+
+        given()
+                .when().get(headerLocation)
+                .then()
+                .statusCode(200)
+                .body("description", is("Book train tickets."));
+
+        given()
+                .when().get("list")
+                .then()
+                .statusCode(200)
+                .body("description", hasItems("Book train tickets."));
+
+        awaitDrained();
+
+        given()
+                .when().get(headerLocation)
+                .then()
+                .statusCode(200)
+                .body("description", is("Book train tickets."))
+                .body("version", is(0));
+    }
+
+    @Test
+    @Order(1)
+    void testWritesArriveInGroupCommits() {
+        awaitDrained();
+        ToDoWriteBehindStatistics before = this.writeBehind.getStatistics();
+
+        for (int i = 0; i < 5; i++) {
+            given()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(toDo("Grouped write " + i + ".", 1).toString())
+                    .when().post()
+                    .then()
+                    .statusCode(201);
+        }
+
+        awaitDrained();
+        ToDoWriteBehindStatistics after = this.writeBehind.getStatistics();
+
+        assertEquals(5, after.writes() - before.writes());
+        assertTrue(after.commits() - before.commits() < 5);
+        assertTrue(after.maxBatchSize() > 1);
+    }
+
+    @Test
+    @Order(2)
+    void testFullQueueReturnsServiceUnavailable() {
+        awaitDrained();
+        int sizeBefore = listSize();
+        JsonArrayBuilder todosRaw = Json.createArrayBuilder();
+
+        for (int i = 0; i < 200; i++) {
+            todosRaw.add(toDo("Queued write " + i + ".", 3));
+        }
+
+        // the writer holds at most one batch, so the queue is full long before the 200th item
+        CountDownLatch release = new CountDownLatch(1);
+        this.writeBehind.holdCommits(release);
+        List<Integer> statuses;
+
+        try {
+            statuses = given()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(todosRaw.build().toString())
+                    .when().post("batch")
+                    .then()
+                    .statusCode(200)
+                    .extract()
+                    .path("status");
+        } finally {
+            release.countDown();
+        }
+
+        long accepted = statuses.stream().filter(status -> status == 201).count();
+
+        assertTrue(statuses.contains(503));
+        assertTrue(accepted >= QUEUE_CAPACITY);
+        assertTrue(accepted <= QUEUE_CAPACITY + BATCH_SIZE);
+        assertEquals(List.of(201), statuses.subList(0, QUEUE_CAPACITY).stream().distinct().toList());
+
+        awaitDrained();
+
+        assertEquals(sizeBefore + accepted, listSize());
+        assertEquals(0, this.writeBehind.getStatistics().dropped());
+    }
+
+    @Test
+    @Order(3)
+    void testBatchUpdateIsQueuedBehindSingleUpdate() {
+        awaitDrained();
+        ToDo toDo = Arrays.stream(given().when().get("list").then().extract().as(ToDo[].class))
+                .filter(t -> t.getDescription().equals("Book train tickets."))
+                .findFirst()
+                .orElseThrow();
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(toDo("Book train tickets early.", 2).toString())
+                .when().patch("" + toDo.getId())
+                .then()
+                .statusCode(204);
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Json.createArrayBuilder()
+                        .add(Json.createObjectBuilder()
+                                .add("id", toDo.getId())
+                                .add("description", "Book train tickets now.")
+                                .add("deadline", "2023-11-10")
+                                .add("priority", 1))
+                        .build().toString())
+                .when().patch("batch")
+                .then()
+                .statusCode(200)
+                .body("status", hasItems(204));
+
+        given()
+                .when().get("" + toDo.getId())
+                .then()
+                .statusCode(200)
+                .body("description", is("Book train tickets now."));
+
+        awaitDrained();
+
+        given()
+                .when().get("" + toDo.getId())
+                .then()
+                .statusCode(200)
+                .body("description", is("Book train tickets now."))
+                .body("priority", is(1));
+    }
+
+    @Test
+    @Order(4)
+    void testPendingRemovalDoesNotShortenLimitedReads() {
+        List<Long> ids = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            String headerLocation = given()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(toDo("Renew passport " + i + ".", "2031-01-0" + (i + 1), 2).toString())
+                    .when().post()
+                    .then()
+                    .statusCode(201)
+                    .extract()
+                    .header("Location");
+            ids.add(Long.parseLong(headerLocation.substring(headerLocation.lastIndexOf('/') + 1)));
+        }
+
+        awaitDrained();
+        CountDownLatch release = new CountDownLatch(1);
+        this.writeBehind.holdCommits(release);
+
+        try {
+            given()
+                    .when().delete("" + ids.get(0))
+                    .then()
+                    .statusCode(204);
+
+            given()
+                    .queryParam("from", "2031-01-01")
+                    .queryParam("to", "2031-02-01")
+                    .queryParam("limit", 2)
+                    .when().get("due")
+                    .then()
+                    .statusCode(200)
+                    .body("description", contains("Renew passport 1.", "Renew passport 2."));
+
+            given()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Json.createObjectBuilder()
+                            .add("from", "2031-01-01")
+                            .add("to", "2031-01-31")
+                            .add("limit", 2)
+                            .build().toString())
+                    .when().post("query")
+                    .then()
+                    .statusCode(200)
+                    .body("description", contains("Renew passport 1.", "Renew passport 2."));
+        } finally {
+            release.countDown();
+        }
+
+        awaitDrained();
+    }
+
+    @Test
+    @Order(5)
+    void testPriorityListFromDatabaseIncludesPendingWrites() {
+        awaitDrained();
+        CountDownLatch release = new CountDownLatch(1);
+        this.writeBehind.holdCommits(release);
+
+        try {
+            given()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(toDo("Water plants.", 3).toString())
+                    .when().post()
+                    .then()
+                    .statusCode(201);
+
+            given()
+                    .when().get("list/3")
+                    .then()
+                    .statusCode(200)
+                    .body("description", hasItems("Water plants."));
+        } finally {
+            release.countDown();
+        }
+
+        awaitDrained();
+    }
+
+    @Test
+    @Order(99)
+    void testQueueIsDrainedOnStop() throws InterruptedException {
+        awaitDrained();
+        int sizeBefore = listSize();
+
+        for (int i = 0; i < 3; i++) {
+            given()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(toDo("Write before stop " + i + ".", 2).toString())
+                    .when().post()
+                    .then()
+                    .statusCode(201);
+        }
+
+        this.writeBehind.stop();
+
+        assertEquals(0, this.writeBehind.getStatistics().queueDepth());
+        assertEquals(0, this.writeBehind.getStatistics().dropped());
+        assertEquals(sizeBefore + 3, listSize());
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(toDo("Write after stop.", 2).toString())
+                .when().post()
+                .then()
+                .statusCode(503);
+    }
+
+    private static JsonObject toDo(String description, int priority) {
+        return toDo(description, "2023-11-10", priority);
+    }
+
+    private static JsonObject toDo(String description, String deadline, int priority) {
+        return Json.createObjectBuilder()
+                .add("description", description)
+                .add("deadline", deadline)
+                .add("priority", priority)
+                .build();
+    }
+
+    private static int listSize() {
+        return given().when().get("list").then().statusCode(200).extract().as(ToDo[].class).length;
+    }
+
+    /**
+     * Waits until the writer has committed every accepted write.
+     */
+    private void awaitDrained() {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+
+        while (this.writeBehind.getStatistics().writes() < this.writeBehind.getEnqueued()) {
+            assertTrue(System.nanoTime() < deadline, "Write-behind queue not drained");
+
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
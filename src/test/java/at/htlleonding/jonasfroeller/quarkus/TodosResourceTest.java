@@ -1,23 +1,59 @@
 package at.htlleonding.jonasfroeller.quarkus;
 
+import at.htlleonding.jonasfroeller.quarkus.boundary.SqlStatementBudgetInterceptor;
+import at.htlleonding.jonasfroeller.quarkus.boundary.ToDoListJsonWriter;
 import at.htlleonding.jonasfroeller.quarkus.boundary.ToDoResource;
 import at.htlleonding.jonasfroeller.quarkus.model.ToDo;
+import at.htlleonding.jonasfroeller.quarkus.repository.ToDoChangeFeed;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.test.common.http.TestHTTPEndpoint;
+import io.quarkus.test.common.http.TestHTTPResource;
 import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
 import jakarta.json.Json;
+import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,6 +61,18 @@ import static org.junit.jupiter.api.Assertions.*;
 @TestHTTPEndpoint(ToDoResource.class)
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 class TodosResourceTest {
+    @TestHTTPEndpoint(ToDoResource.class)
+    @TestHTTPResource
+    URL todos;
+    @Inject
+    ObjectMapper objectMapper;
+    @Inject
+    MeterRegistry registry;
+    @Inject
+    ToDoChangeFeed changeFeed;
+    @ConfigProperty(name = "todo.http.compression-threshold")
+    int compressionThreshold;
+
     @Test
     @Order(0)
     void testListReturnsTodosInCorrectOrder() {
@@ -49,6 +97,148 @@ class TodosResourceTest {
                 .body("priority[4]", is(3));
     }
 
+    @Test
+    @Order(0)
+    void testListInBinaryFormatsMatchesJson() throws IOException {
+        Map<String, ObjectMapper> mappers = Map.of(
+                ToDoResource.APPLICATION_CBOR, new ObjectMapper(new CBORFactory()),
+                ToDoResource.APPLICATION_SMILE, new ObjectMapper(new SmileFactory()));
+        String changeTires = "Change tires. 2023-10-31 1";
+        String feedCats = "Feed cats. 2023-11-03 3";
+        String bakeCookies = "Bake christmas cookies. 2023-12-24 1";
+        String prepareExam = "Prepare exam questions. 2024-06-05 3";
+        Map<String, List<String>> lists = Map.of(
+                "list", List.of(changeTires, feedCats, "Do laundry. 2023-11-05 2", bakeCookies, prepareExam),
+                "list/1", List.of(changeTires, bakeCookies),
+                "list/3", List.of(feedCats, prepareExam));
+
+        for (Map.Entry<String, List<String>> list : lists.entrySet()) {
+            String jsonTag = given()
+                    .when().get(list.getKey())
+                    .then()
+                    .statusCode(200)
+                    .extract().header("ETag");
+
+            for (Map.Entry<String, ObjectMapper> format : mappers.entrySet()) {
+                Response response = given()
+                        .accept(format.getKey())
+                        .when().get(list.getKey())
+                        .then()
+                        .statusCode(200)
+                        .contentType(format.getKey())
+                        .extract().response();
+
+                List<Map<String, Object>> todos = format.getValue().readValue(response.asByteArray(), new TypeReference<>() {
+                });
+
+                assertNotEquals(jsonTag, response.header("ETag"), list.getKey() + " " + format.getKey());
+                assertEquals(list.getValue(), todos.stream()
+                        .map(todo -> todo.get("description") + " " + todo.get("deadline") + " " + todo.get("priority"))
+                        .toList(), list.getKey() + " " + format.getKey());
+            }
+        }
+    }
+
+    @Test
+    @Order(0)
+    void testListJsonWriterWritesSameJsonAsJackson() throws IOException {
+        ToDo special = new ToDo();
+        special.setDescription("Quote \" backslash \\ tab \t newline \n bell \u0007 umlaut \u00e4 euro \u20ac emoji \ud83d\ude00");
+        special.setPriority(2);
+
+        // id and revision set, so neither is left out as a default
+        ToDo changed = new ToDo();
+        changed.assignId(42);
+        changed.markChanged(99);
+        changed.setDescription("Water plants.");
+        changed.setDeadline(LocalDate.of(2023, 11, 12));
+        changed.setPriority(3);
+
+        List<ToDo> todos = new ArrayList<>(MockTodosRepository.fixtures());
+        todos.add(special);
+        todos.add(changed);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        new ToDoListJsonWriter().write(todos, written);
+
+        assertEquals(this.objectMapper.writeValueAsString(todos), written.toString(StandardCharsets.UTF_8));
+
+        // a property added to or removed from ToDo must be added to or removed from the writer as well
+        List<String> properties = this.objectMapper.getSerializationConfig()
+                .introspect(this.objectMapper.constructType(ToDo.class))
+                .findProperties().stream()
+                .filter(BeanPropertyDefinition::couldSerialize)
+                .map(BeanPropertyDefinition::getName)
+                .toList();
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        new ToDoListJsonWriter().write(List.of(changed), single);
+        List<String> writtenProperties = new ArrayList<>();
+        this.objectMapper.readTree(single.toByteArray()).get(0).fieldNames().forEachRemaining(writtenProperties::add);
+
+        assertEquals(List.of("id", "version", "revision", "description", "deadline", "priority"), writtenProperties);
+        assertEquals(properties, writtenProperties);
+
+        // the list endpoint goes through the writer as well
+        String json = given().when().get("list").then().statusCode(200).extract().asString();
+        assertEquals(this.objectMapper.writeValueAsString(this.objectMapper.readTree(json)), json);
+
+        for (JsonNode node : this.objectMapper.readTree(json)) {
+            List<String> names = new ArrayList<>();
+            node.fieldNames().forEachRemaining(names::add);
+            assertEquals(writtenProperties, names);
+        }
+    }
+
+    @Test
+    @Order(0)
+    void testListIsCompressedAboveThreshold() throws Exception {
+        String base = this.todos.toString().replaceAll("/$", "");
+
+        // whichever lists the fixtures make large or small, over HTTP/1.1 and HTTP/2
+        for (HttpClient.Version version : HttpClient.Version.values()) {
+            HttpClient client = HttpClient.newBuilder().version(version).build();
+
+            for (String path : List.of("/list", "/list/1", "/list/2", "/list/3")) {
+                byte[] plain = client.send(HttpRequest.newBuilder(URI.create(base + path)).build(),
+                        HttpResponse.BodyHandlers.ofByteArray()).body();
+                HttpResponse<byte[]> list = client.send(HttpRequest.newBuilder(URI.create(base + path))
+                        .header("Accept-Encoding", "gzip")
+                        .build(), HttpResponse.BodyHandlers.ofByteArray());
+                String encoding = list.headers().firstValue("Content-Encoding").orElse(null);
+
+                if (plain.length > this.compressionThreshold) {
+                    assertEquals("gzip", encoding, version + " " + path);
+
+                    try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(list.body()))) {
+                        assertArrayEquals(plain, body.readAllBytes(), version + " " + path);
+                    }
+                } else {
+                    assertNotEquals("gzip", encoding, version + " " + path);
+                    assertArrayEquals(plain, list.body(), version + " " + path);
+                }
+            }
+        }
+    }
+
+    @Test
+    @Order(0)
+    void testRepeatedListIsServedFromCache() {
+        String first = given().when().get("list").then().statusCode(200).extract().asString();
+        long hits = given().when().get("diagnostics/list-cache").then().extract().jsonPath().getLong("hits");
+        long misses = given().when().get("diagnostics/list-cache").then().extract().jsonPath().getLong("misses");
+
+        String second = given().when().get("list").then().statusCode(200).extract().asString();
+
+        assertEquals(first, second);
+        given()
+                .when().get("diagnostics/list-cache")
+                .then()
+                .statusCode(200)
+                .body("enabled", is(true))
+                .body("hits", is((int) hits + 1))
+                .body("misses", is((int) misses));
+    }
+
     @Test
     @Order(0)
     void testListFilteredByPriorityReturnsCorrectTodos() {
@@ -111,6 +301,362 @@ class TodosResourceTest {
         }
     }
 
+    @Test
+    @Order(0)
+    void testPagesReturnTodosInCorrectOrder() {
+        String cursor = given()
+                .queryParam("limit", 2)
+                .when().get("page")
+                .then()
+                .statusCode(200)
+                .body("items.size()", is(2))
+                .body("items.description", contains("Change tires.", "Feed cats."))
+                .extract()
+                .path("nextCursor");
+
+        cursor = given()
+                .queryParam("limit", 2)
+                .queryParam("cursor", cursor)
+                .when().get("page")
+                .then()
+                .statusCode(200)
+                .body("items.description", contains("Do laundry.", "Bake christmas cookies."))
+                .extract()
+                .path("nextCursor");
+
+        given()
+                .queryParam("limit", 2)
+                .queryParam("cursor", cursor)
+                .when().get("page")
+                .then()
+                .statusCode(200)
+                .body("items.description", contains("Prepare exam questions."))
+                .body("nextCursor", is(nullValue()));
+    }
+
+    @Test
+    @Order(0)
+    void testListWithLimitReturnsPagesInCorrectOrder() {
+        String cursor = given()
+                .queryParam("limit", 3)
+                .when().get("list")
+                .then()
+                .statusCode(200)
+                .body("items.description", contains("Change tires.", "Feed cats.", "Do laundry."))
+                .extract()
+                .path("nextCursor");
+
+        given()
+                .queryParam("after", cursor)
+                .when().get("list")
+                .then()
+                .statusCode(200)
+                .body("items.description", contains("Bake christmas cookies.", "Prepare exam questions."))
+                .body("nextCursor", is(nullValue()));
+
+        given()
+                .queryParam("limit", 0)
+                .when().get("list")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(0)
+    void testPageWithInvalidCursorOrLimitReturnsBadRequest() {
+        given()
+                .queryParam("cursor", "not-a-cursor")
+                .when().get("page")
+                .then()
+                .statusCode(400);
+
+        given()
+                .queryParam("limit", 0)
+                .when().get("page")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(0)
+    void testExportStreamsOneTodoPerLineInCorrectOrder() {
+        String body = given()
+                .accept(ToDoResource.APPLICATION_NDJSON)
+                .when().get("export")
+                .then()
+                .statusCode(200)
+                .extract()
+                .body()
+                .asString();
+
+        List<String> lines = body.lines().toList();
+
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).contains("Change tires."));
+        assertTrue(lines.get(4).contains("Prepare exam questions."));
+    }
+
+    @Test
+    @Order(0)
+    void testGetTodoByIdIsServedFromCache() {
+        int id = given()
+                .when().get("list")
+                .then()
+                .extract()
+                .path("id[0]");
+
+        given().when().get(Integer.toString(id)).then().statusCode(200);
+
+        int hitsBefore = given()
+                .when().get("diagnostics/cache")
+                .then()
+                .statusCode(200)
+                .extract()
+                .path("hits");
+
+        given().when().get(Integer.toString(id)).then().statusCode(200);
+
+        int hitsAfter = given()
+                .when().get("diagnostics/cache")
+                .then()
+                .body("evictions", greaterThanOrEqualTo(0))
+                .extract()
+                .path("hits");
+
+        assertTrue(hitsAfter > hitsBefore);
+    }
+
+    @Test
+    @Order(0)
+    void testDueRangesReturnTodosInDeadlineOrder() {
+        given()
+                .queryParam("from", "2023-11-01")
+                .queryParam("to", "2023-12-24")
+                .when().get("due")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Feed cats.", "Do laundry."));
+
+        given()
+                .when().get("overdue")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Change tires.", "Feed cats.", "Do laundry.", "Bake christmas cookies.", "Prepare exam questions."));
+
+        given()
+                .queryParam("days", 7)
+                .when().get("due-soon")
+                .then()
+                .statusCode(200)
+                .body("size()", is(0));
+
+        given()
+                .queryParam("from", "2023-12-01")
+                .when().get("due")
+                .then()
+                .statusCode(400);
+
+        given()
+                .queryParam("days", 0)
+                .when().get("due-soon")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(0)
+    void testDueCountsComeFromDeadlineBuckets() {
+        given()
+                .when().get("due/counts")
+                .then()
+                .statusCode(200)
+                .body("today", is(LocalDate.now().toString()))
+                .body("overdue", is(5))
+                .body("dueToday", is(0))
+                .body("dueThisWeek", is(0));
+    }
+
+    @Test
+    @Order(0)
+    void testStatsComeFromCounters() {
+        given()
+                .when().get("stats")
+                .then()
+                .statusCode(200)
+                .body("total", is(5))
+                .body("byPriority.1", is(2))
+                .body("byPriority.2", is(1))
+                .body("byPriority.3", is(2))
+                .body("withoutDeadline", is(0))
+                .body("overdue", is(5))
+                .body("dueThisWeek", is(0))
+                .body("byMonth.'2023-10'", is(1))
+                .body("byMonth.'2023-11'", is(2))
+                .body("byMonth.'2023-12'", is(1))
+                .body("byMonth.'2024-06'", is(1));
+    }
+
+    @Test
+    @Order(0)
+    void testSearchMatchesWordsPrefixesAndTypos() {
+        given()
+                .queryParam("q", "cats")
+                .when().get("search")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Feed cats."));
+
+        given()
+                .queryParam("q", "exam quest*")
+                .when().get("search")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Prepare exam questions."));
+
+        given()
+                .queryParam("q", "cokies")
+                .queryParam("fuzzy", true)
+                .when().get("search")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Bake christmas cookies."));
+
+        given()
+                .queryParam("q", "cokies")
+                .when().get("search")
+                .then()
+                .statusCode(200)
+                .body("size()", is(0));
+    }
+
+    @Test
+    @Order(0)
+    void testSearchCombinesPriorityAndDeadlineFilters() {
+        given()
+                .queryParam("q", "ch*")
+                .when().get("search")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Change tires.", "Bake christmas cookies."));
+
+        given()
+                .queryParam("q", "c* ch*")
+                .when().get("search")
+                .then()
+                .statusCode(400);
+
+        given()
+                .queryParam("q", "ch*")
+                .queryParam("priority", 1)
+                .queryParam("to", "2023-11-30")
+                .when().get("search")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Change tires."));
+
+        given()
+                .queryParam("q", "ca*")
+                .queryParam("from", "2023-11-01")
+                .queryParam("to", "2023-11-30")
+                .when().get("search")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Feed cats."));
+
+        given()
+                .queryParam("q", "")
+                .when().get("search")
+                .then()
+                .statusCode(400);
+
+        given()
+                .queryParam("q", "cats")
+                .queryParam("from", "yesterday")
+                .when().get("search")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(0)
+    void testQueryFallsBackToDatabaseWithoutColumns() {
+        // the memory plan needs the columns, see ToDoColumnsTest
+        JsonObject query = Json.createObjectBuilder()
+                .add("priorities", Json.createArrayBuilder().add(1).add(3))
+                .add("from", "2023-11-01")
+                .add("to", "2024-12-31")
+                .add("contains", "E")
+                .add("sort", "priority")
+                .add("plan", "memory")
+                .build();
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(query.toString())
+                .when().post("query")
+                .then()
+                .statusCode(200)
+                .header("X-Query-Plan", is("database"))
+                .header("X-Query-Estimated-Rows", notNullValue())
+                .header("X-Query-Cost", containsString("memory=none"))
+                .body("description", contains("Bake christmas cookies.", "Feed cats.", "Prepare exam questions."));
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Json.createObjectBuilder().add("prefix", "do ").build().toString())
+                .when().post("query")
+                .then()
+                .statusCode(200)
+                .body("description", contains("Do laundry."));
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Json.createObjectBuilder().add("limit", 2).build().toString())
+                .when().post("query")
+                .then()
+                .statusCode(200)
+                .header("X-Query-Plan", is("database"))
+                .body("description", contains("Change tires.", "Feed cats."));
+    }
+
+    @Test
+    @Order(0)
+    void testQueryWithInvalidFilterReturnsBadRequest() {
+        List<JsonObject> queries = List.of(
+                Json.createObjectBuilder().add("priorities", Json.createArrayBuilder().add(4)).build(),
+                Json.createObjectBuilder().add("from", "2024-01-02").add("to", "2024-01-01").build(),
+                Json.createObjectBuilder().add("sort", "description").build(),
+                Json.createObjectBuilder().add("plan", "index").build(),
+                Json.createObjectBuilder().add("limit", 0).build()
+        );
+
+        for (JsonObject query : queries) {
+            given()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(query.toString())
+                    .when().post("query")
+                    .then()
+                    .statusCode(400);
+        }
+    }
+
+    @Test
+    @Order(0)
+    void testMetricsAreExposed() {
+        given().when().get("list/1").then().statusCode(200);
+
+        given()
+                .basePath("")
+                .when().get("q/metrics")
+                .then()
+                .statusCode(200)
+                .body(containsString("todo_repository_seconds_count"))
+                .body(containsString("method=\"getAllToDosHavingPriority\""))
+                .body(containsString("todo_repository_priority_seconds_count{priority=\"1\""))
+                .body(containsString("todo_priority_index_size{priority=\"1\""))
+                .body(containsString("http_server_requests_seconds_count"));
+    }
+
     @Test
     @Order(1)
     void testAddTodoWithPriorityTooLowReturnsError() {
@@ -131,6 +677,71 @@ class TodosResourceTest {
                 .asString();
 
         assertTrue(body.contains("Priority must be between 1 and 3!"));
+
+        String metrics = given()
+                .basePath("")
+                .when().get("q/metrics")
+                .then()
+                .statusCode(200)
+                .extract()
+                .body()
+                .asString();
+
+        assertTrue(metrics.lines().anyMatch(line -> line.matches("todo_changes_rejected_total\\{kind=\"created\",reason=\"priority\",?} [1-9].*")));
+    }
+
+    @Test
+    @Order(1)
+    void testAddTodoWithoutPriorityReturnsError() {
+        int sizeExpected = given()
+                .when().get("list")
+                .then()
+                .extract()
+                .response()
+                .as(ToDo[].class).length;
+
+        JsonObject todoRaw = Json.createObjectBuilder()
+                .add("description", "Water plants.")
+                .add("deadline", "2023-11-04")
+                .build();
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(todoRaw.toString())
+                .when().post()
+                .then()
+                .statusCode(400);
+
+        int sizeActual = given()
+                .when().get("list")
+                .then()
+                .extract()
+                .response()
+                .as(ToDo[].class).length;
+
+        assertEquals(sizeExpected, sizeActual);
+    }
+
+    @Test
+    @Order(1)
+    void testAddTodoWithDescriptionTooLongReturnsError() {
+        JsonObject todoRaw = Json.createObjectBuilder()
+                .add("description", "x".repeat(ToDo.DESCRIPTION_LENGTH_MAX + 1))
+                .add("deadline", "2023-11-04")
+                .add("priority", 1)
+                .build();
+
+        String body = given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(todoRaw.toString())
+                .when().post()
+                .then()
+                .statusCode(400)
+                .extract()
+                .body()
+                .asString();
+
+        assertTrue(body.contains("Description must not be longer than 500 characters!"));
     }
 
     @Test
@@ -250,6 +861,32 @@ class TodosResourceTest {
         assertEquals(3, todo.getPriority());
     }
 
+    @Test
+    @Order(1)
+    void testAddTodoIgnoresVersionInInput() {
+        JsonObject todoRaw = Json.createObjectBuilder()
+                .add("description", "Renew passport.")
+                .add("deadline", "2023-11-14")
+                .add("priority", 2)
+                .add("version", 7)
+                .build();
+
+        String headerLocation = given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(todoRaw.toString())
+                .when().post()
+                .then()
+                .statusCode(201)
+                .extract()
+                .header("Location");
+
+        given()
+                .when().get(headerLocation)
+                .then()
+                .statusCode(200)
+                .body("version", is(0));
+    }
+
     @Test
     @Order(1)
     void testAddTodoChangesList() {
@@ -715,6 +1352,406 @@ class TodosResourceTest {
         assertFalse(todosHighAfter.stream().anyMatch(t -> t.getDescription().equals(todo.getDescription())));
     }
 
+    @Test
+    @Order(3)
+    void testBatchEndpointsReportResultPerItem() {
+        JsonArray todosRaw = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder()
+                        .add("description", "Water plants.")
+                        .add("deadline", "2023-11-20")
+                        .add("priority", 2))
+                .add(Json.createObjectBuilder()
+                        .add("description", "Clean windows.")
+                        .add("deadline", "2023-11-21")
+                        .add("priority", 1))
+                .build();
+
+        List<Integer> ids = given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(todosRaw.toString())
+                .when().post("batch")
+                .then()
+                .statusCode(200)
+                .body("status", contains(201, 201))
+                .extract()
+                .path("id");
+
+        int idMissing = ids.get(1) + 1000;
+
+        JsonArray updatesRaw = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder()
+                        .add("id", ids.get(0))
+                        .add("description", "Water all plants.")
+                        .add("deadline", "2023-11-20")
+                        .add("priority", 3))
+                .add(Json.createObjectBuilder()
+                        .add("id", idMissing)
+                        .add("description", "Does not exist.")
+                        .add("deadline", "2023-11-20")
+                        .add("priority", 3))
+                .add(Json.createObjectBuilder()
+                        .add("id", ids.get(1))
+                        .add("description", "Clean all windows.")
+                        .add("deadline", "2023-11-21"))
+                .build();
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(updatesRaw.toString())
+                .when().patch("batch")
+                .then()
+                .statusCode(200)
+                .body("status", contains(204, 404, 400));
+
+        ToDo todo = given()
+                .when().get("" + ids.get(0))
+                .then()
+                .extract()
+                .as(ToDo.class);
+
+        assertEquals("Water all plants.", todo.getDescription());
+        assertEquals(3, todo.getPriority());
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Json.createArrayBuilder().add(ids.get(0)).add(ids.get(1)).build().toString())
+                .when().delete("batch")
+                .then()
+                .statusCode(200)
+                .body("status", contains(204, 204));
+
+        given()
+                .when().get("" + ids.get(1))
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    @Order(3)
+    void testReplaceTodoKeepsId() {
+        ToDo todoBefore = given()
+                .when().get("list")
+                .then()
+                .extract()
+                .response()
+                .as(ToDo[].class)[0];
+
+        JsonObject todoRaw = Json.createObjectBuilder()
+                .add("description", "Sort socks.")
+                .add("deadline", "2023-11-15")
+                .add("priority", 1)
+                .build();
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(todoRaw.toString())
+                .when().put("" + todoBefore.getId())
+                .then()
+                .statusCode(204);
+
+        ToDo todoAfter = given()
+                .when().get("" + todoBefore.getId())
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(ToDo.class);
+
+        assertEquals(todoBefore.getId(), todoAfter.getId());
+        assertEquals("Sort socks.", todoAfter.getDescription());
+        assertEquals(LocalDate.of(2023, 11, 15), todoAfter.getDeadline());
+    }
+
+    @Test
+    @Order(3)
+    void testConditionalRequestsUseETags() {
+        int id = given()
+                .when().get("list")
+                .then()
+                .extract()
+                .path("id[0]");
+
+        String etag = given()
+                .when().get("" + id)
+                .then()
+                .statusCode(200)
+                .extract()
+                .header("ETag");
+
+        assertNotNull(etag);
+
+        given()
+                .header("If-None-Match", etag)
+                .when().get("" + id)
+                .then()
+                .statusCode(304);
+
+        JsonObject todoRaw = Json.createObjectBuilder()
+                .add("description", "Polish shoes.")
+                .add("deadline", "2023-11-18")
+                .add("priority", 2)
+                .build();
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", "\"" + id + ".999999\"")
+                .body(todoRaw.toString())
+                .when().patch("" + id)
+                .then()
+                .statusCode(412);
+
+        String etagUpdated = given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", etag)
+                .body(todoRaw.toString())
+                .when().patch("" + id)
+                .then()
+                .statusCode(204)
+                .extract()
+                .header("ETag");
+
+        assertNotEquals(etag, etagUpdated);
+
+        given()
+                .header("If-None-Match", etag)
+                .when().get("" + id)
+                .then()
+                .statusCode(200)
+                .body("description", is("Polish shoes."));
+
+        String etagList = given()
+                .when().get("list")
+                .then()
+                .statusCode(200)
+                .extract()
+                .header("ETag");
+
+        given()
+                .header("If-None-Match", etagList)
+                .when().get("list")
+                .then()
+                .statusCode(304);
+    }
+
+    @Test
+    @Order(1)
+    void testListETagChangesOnlyWithItsPriority() {
+        String all = given().when().get("list").then().statusCode(200).extract().header("ETag");
+        String first = given().when().get("list/1").then().statusCode(200).extract().header("ETag");
+        String second = given().when().get("list/2").then().statusCode(200).extract().header("ETag");
+
+        JsonObject todo = Json.createObjectBuilder()
+                .add("description", "Renew the passport.")
+                .add("deadline", "2025-03-01")
+                .add("priority", 1)
+                .build();
+
+        given().contentType(MediaType.APPLICATION_JSON).body(todo.toString()).when().post().then().statusCode(201);
+
+        given().header("If-None-Match", all).when().get("list").then().statusCode(200);
+        given().header("If-None-Match", first).when().get("list/1").then().statusCode(200)
+                .body("description", hasItems("Renew the passport."));
+        given().header("If-None-Match", second).when().get("list/2").then().statusCode(304);
+    }
+
+    @Test
+    @Order(1)
+    void testListSinceReturnsOnlyChangesAndRemovals() {
+        long since = given()
+                .queryParam("since", 0)
+                .when().get("list")
+                .then()
+                .statusCode(200)
+                .extract().jsonPath().getLong("revision");
+
+        JsonObject kept = Json.createObjectBuilder()
+                .add("description", "Sync the phone.")
+                .add("deadline", "2025-02-01")
+                .add("priority", 1)
+                .build();
+        JsonObject dropped = Json.createObjectBuilder()
+                .add("description", "Sync the tablet.")
+                .add("deadline", "2025-02-02")
+                .add("priority", 1)
+                .build();
+
+        given().contentType(MediaType.APPLICATION_JSON).body(kept.toString()).when().post().then().statusCode(201);
+        String location = given().contentType(MediaType.APPLICATION_JSON).body(dropped.toString())
+                .when().post()
+                .then()
+                .statusCode(201)
+                .extract().header("Location");
+        long droppedId = Long.parseLong(location.substring(location.lastIndexOf('/') + 1));
+
+        given().when().delete("" + droppedId).then().statusCode(204);
+
+        long revision = given()
+                .queryParam("since", since)
+                .when().get("list")
+                .then()
+                .statusCode(200)
+                .body("full", is(false))
+                .body("changed.description", contains("Sync the phone."))
+                .body("removed", contains((int) droppedId))
+                .extract().jsonPath().getLong("revision");
+
+        given()
+                .queryParam("since", revision)
+                .when().get("list")
+                .then()
+                .statusCode(200)
+                .body("full", is(false))
+                .body("changed.size()", is(0))
+                .body("removed.size()", is(0));
+
+        given()
+                .queryParam("since", -1)
+                .when().get("list")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(1)
+    void testListCacheIsInvalidatedPerPriority() {
+        given().when().get("list/1").then().statusCode(200);
+        given().when().get("list/2").then().statusCode(200);
+
+        JsonObject todo = Json.createObjectBuilder()
+                .add("description", "Water the plants.")
+                .add("deadline", "2025-03-01")
+                .add("priority", 2)
+                .build();
+
+        given().contentType(MediaType.APPLICATION_JSON).body(todo.toString()).when().post().then().statusCode(201);
+
+        long hits = given().when().get("diagnostics/list-cache").then().extract().jsonPath().getLong("hits");
+        long misses = given().when().get("diagnostics/list-cache").then().extract().jsonPath().getLong("misses");
+
+        // another priority stays cached
+        given().when().get("list/1").then().statusCode(200);
+        given()
+                .when().get("diagnostics/list-cache")
+                .then()
+                .body("hits", is((int) hits + 1))
+                .body("misses", is((int) misses));
+
+        given()
+                .when().get("list/2")
+                .then()
+                .statusCode(200)
+                .body("description", hasItems("Water the plants."));
+        given()
+                .when().get("diagnostics/list-cache")
+                .then()
+                .body("hits", is((int) hits + 1))
+                .body("misses", is((int) misses + 1));
+    }
+
+    @Test
+    @Order(1)
+    void testChangesResumeFromLastEventId() {
+        JsonObject todo = Json.createObjectBuilder()
+                .add("description", "Announce the change feed.")
+                .add("deadline", "2025-01-07")
+                .add("priority", 2)
+                .build();
+
+        given()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(todo.toString())
+                .when().post()
+                .then()
+                .statusCode(201);
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(this.todos.toString().replaceAll("/$", "") + "/changes"))
+                .header("Accept", MediaType.SERVER_SENT_EVENTS)
+                .header("Last-Event-ID", this.changeFeed.getEpoch() + "-0")
+                .build();
+
+        String event = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try (Stream<String> lines = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofLines()).body()) {
+                String name = null;
+
+                for (String line : (Iterable<String>) lines::iterator) {
+                    if (line.startsWith("event:")) {
+                        name = line.substring("event:".length()).trim();
+                    } else if (line.startsWith("data:") && line.contains("Announce the change feed.")) {
+                        return name;
+                    }
+                }
+
+                return null;
+            }
+        });
+
+        assertEquals("created", event);
+    }
+
+    @Test
+    @Order(1)
+    void testChangesStartWithResetForIdOfAnotherEpoch() {
+        for (String lastEventId : List.of("0", "1-0", this.changeFeed.getEpoch() + "x-0")) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(this.todos.toString().replaceAll("/$", "") + "/changes"))
+                    .header("Accept", MediaType.SERVER_SENT_EVENTS)
+                    .header("Last-Event-ID", lastEventId)
+                    .build();
+
+            List<String> event = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                try (Stream<String> lines = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofLines()).body()) {
+                    String id = null;
+                    String name = null;
+
+                    for (String line : (Iterable<String>) lines::iterator) {
+                        if (line.startsWith("id:")) {
+                            id = line.substring("id:".length()).trim();
+                        } else if (line.startsWith("event:")) {
+                            name = line.substring("event:".length()).trim();
+                        } else if (line.isEmpty() && name != null) {
+                            return Arrays.asList(id, name);
+                        }
+                    }
+
+                    return null;
+                }
+            });
+
+            assertNotNull(event);
+            assertEquals("reset", event.get(1));
+            assertTrue(event.get(0).startsWith(this.changeFeed.getEpoch() + "-"), event.get(0));
+        }
+    }
+
+    @Test
+    @Order(98)
+    void testPriorityIndexIsConsistentWithDatabaseAfterAllChanges() {
+        given()
+                .when().get("diagnostics/priority-index")
+                .then()
+                .statusCode(200)
+                .body("enabled", is(true))
+                .body("consistent", is(true));
+    }
+
+    @Test
+    @Order(98)
+    void testStatisticsAreConsistentWithDatabaseAfterAllChanges() {
+        given()
+                .when().get("diagnostics/stats")
+                .then()
+                .statusCode(200)
+                .body("consistent", is(true));
+    }
+
+    @Test
+    @Order(98)
+    void testNoEndpointExceededItsSqlStatementBudget() {
+        double exceeded = this.registry.find(SqlStatementBudgetInterceptor.BUDGET_EXCEEDED_COUNTER).counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+
+        assertEquals(0, exceeded);
+    }
+
     @Test
     @Order(99)
     void testListInCorrectOrderAfterAllTests() {